@@ -0,0 +1,60 @@
+import org.json.JSONArray;
+import org.json.JSONException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+
+/**
+ * compiles questions into the binary bank the server memory maps. the input can be the original
+ * serialized questions (.out) or the JSON questions (.json).
+ * <p>
+ * usage: QuestionBankCompiler [input] [output], by default resources/questions.json into resources/questions.bank
+ * <p>
+ * if the input can't be read or has no questions, nothing is written and the exit status is 1, so a broken
+ * input never replaces a good bank with an empty one.
+ */
+public class QuestionBankCompiler extends QuestionToJson {
+    public static void main(String[] args) {
+        String input = args.length > 0 ? args[0] : "resources/questions.json";
+        String output = args.length > 1 ? args[1] : "resources/questions.bank";
+        ArrayList<server.Question> questions;
+        try {
+            questions = input.endsWith(".out") ? readSerialized(input) : readJson(input);
+        } catch (IOException | JSONException e) {
+            System.err.println("couldn't read questions from " + input + ": " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+        if (questions.isEmpty()) {
+            System.err.println("no questions in " + input + ", " + output + " was not written");
+            System.exit(1);
+        }
+        try {
+            server.MappedQuestionBank.write(Paths.get(output), questions);
+            System.out.println("compiled " + questions.size() + " questions into " + output);
+        } catch (IOException e) {
+            System.err.println("couldn't write " + output + ": " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    static ArrayList<server.Question> readSerialized(String path) {
+        ArrayList<server.Question> questions = new ArrayList<>();
+        for (Question question : readQuestions(path)) {
+            questions.add(new server.Question(question.getQuestion(), question.getChoices(),
+                    question.getCorrectAnswer(), question.getPoints()));
+        }
+        return questions;
+    }
+
+    static ArrayList<server.Question> readJson(String path) throws IOException {
+        ArrayList<server.Question> questions = new ArrayList<>();
+        JSONArray jsonArray = new JSONArray(new String(Files.readAllBytes(Paths.get(path))));
+        for (int i = 0; i < jsonArray.length(); i++) {
+            questions.add(server.Question.createFromJson(jsonArray.getJSONObject(i)));
+        }
+        return questions;
+    }
+}
@@ -15,8 +15,12 @@ public class QuestionToJson {
     }
 
     static ArrayList<Question> readQuestions() {
+        return readQuestions("resources/questions.out");
+    }
+
+    static ArrayList<Question> readQuestions(String path) {
         ArrayList<Question> ret = new ArrayList<>();
-        try (ObjectInputStream stream = new ObjectInputStream(new FileInputStream("resources/questions.out"))) {
+        try (ObjectInputStream stream = new ObjectInputStream(new FileInputStream(path))) {
             ret = (ArrayList<Question>) stream.readObject();
         } catch (FileNotFoundException e) {
             e.printStackTrace();
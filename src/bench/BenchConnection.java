@@ -0,0 +1,85 @@
+package bench;
+
+import protocol.Frame;
+import server.Connection;
+import server.MatchMaker;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * a connection without a socket that answers every question right away, so server code can be
+ * measured without the network
+ */
+public class BenchConnection implements Connection {
+    private final String name;
+    private final int answer;
+    private final Consumer<Frame> onSend;
+
+    /**
+     * @param answer answer given to every question
+     * @param onSend gets every frame sent to the connection
+     */
+    public BenchConnection(String name, int answer, Consumer<Frame> onSend) {
+        this.name = name;
+        this.answer = answer;
+        this.onSend = onSend;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getQueue() {
+        return MatchMaker.DEFAULT_QUEUE;
+    }
+
+    @Override
+    public String getToken() {
+        return null;
+    }
+
+    @Override
+    public boolean isResumed() {
+        return false;
+    }
+
+    @Override
+    public boolean isSpectator() {
+        return false;
+    }
+
+    @Override
+    public int getSpectatedMatch() {
+        return -1;
+    }
+
+    @Override
+    public void setTimeOut(long timeout) {
+    }
+
+    @Override
+    public void send(Frame frame) {
+        onSend.accept(frame);
+    }
+
+    @Override
+    public CompletableFuture<Integer> sendQuestion(Frame question) {
+        onSend.accept(question);
+        return CompletableFuture.completedFuture(answer);
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public void closeWhenSent() {
+    }
+
+    @Override
+    public void onClose(Runnable listener) {
+    }
+}
@@ -0,0 +1,74 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import protocol.Codec;
+import protocol.Packet;
+import protocol.ProtocolException;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * encoding and decoding the packets a PlayerSocket exchanges, with both codecs
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Dlogger.level=WARN", "-Dlogger.file=", "-Dlogger.console=false"})
+public class CodecBenchmark {
+    @Param({"json", "binary"})
+    public String codecName;
+    private Codec codec;
+    private Packet answer;
+    private Packet question;
+    private ByteBuffer encodedAnswer;
+    private ByteBuffer encodedQuestion;
+    private Packet out;
+
+    @Setup
+    public void setup() {
+        codec = Codec.forName(codecName);
+        answer = Packet.answer(3);
+        question = Packet.question("What is the largest big cat in the world? (5 points)\n"
+                + "1. Lion\n2. Tiger\n3. Cheetah\n4. Leopard\n");
+        encodedAnswer = codec.encode(answer);
+        encodedQuestion = codec.encode(question);
+        out = new Packet();
+    }
+
+    @Benchmark
+    public ByteBuffer encodeAnswer() {
+        return codec.encode(answer);
+    }
+
+    @Benchmark
+    public ByteBuffer encodeQuestion() {
+        return codec.encode(question);
+    }
+
+    @Benchmark
+    public Packet decodeAnswer() throws ProtocolException {
+        encodedAnswer.rewind();
+        codec.decode(encodedAnswer, out);
+        return out;
+    }
+
+    @Benchmark
+    public Packet decodeQuestion() throws ProtocolException {
+        encodedQuestion.rewind();
+        codec.decode(encodedQuestion, out);
+        return out;
+    }
+}
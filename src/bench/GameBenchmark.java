@@ -0,0 +1,108 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import server.AnswerCollector;
+import server.Game;
+import server.MemoryQuestionBank;
+import server.Player;
+import server.Question;
+import server.QuestionsGenerator;
+import server.TimingWheel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * games between players that answer right away. round is the work of one round without the timer:
+ * sending the question, collecting the answers and deciding the winner. fullGame plays the 5 rounds of a
+ * Game without pauses between the questions, so it also includes the ticks of the timing wheel.
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Dlogger.level=WARN", "-Dlogger.file=", "-Dlogger.console=false"})
+public class GameBenchmark {
+    private static final int FRAMES_PER_GAME = 12; // start, 5 questions, 5 results and the winner
+    @Param({"2", "8"})
+    public int playersCount;
+    private ExecutorService executor;
+    private TimingWheel timer;
+    private QuestionsGenerator generator;
+    private Question question;
+    private List<Player> players;
+    private volatile CountDownLatch gameOver;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        executor = Executors.newFixedThreadPool(2);
+        timer = new TimingWheel(1, executor);
+        timer.start();
+        List<Question> questions = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            questions.add(new Question("question " + i, new String[]{"1. a", "2. b", "3. c", "4. d"}, 2, 5));
+        }
+        generator = new QuestionsGenerator(new MemoryQuestionBank(questions));
+        question = questions.get(0);
+        players = newPlayers();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private List<Player> newPlayers() {
+        List<Player> players = new ArrayList<>(playersCount);
+        for (int i = 0; i < playersCount; i++) {
+            // half of the players answer correctly
+            players.add(new Player(new BenchConnection("player" + i, i % 2 == 0 ? 1 : 2, frame -> {
+                CountDownLatch latch = gameOver;
+                if (latch != null) {
+                    latch.countDown();
+                }
+            })));
+        }
+        return players;
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+    public Object round() {
+        AnswerCollector collector = new AnswerCollector(question, players.size(), () -> {
+        });
+        for (int slot = 0; slot < players.size(); slot++) {
+            int playerSlot = slot;
+            players.get(slot).sendQuestion(question).thenAccept(answer -> collector.record(playerSlot, answer));
+        }
+        return collector.getFirstCorrect();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    public void fullGame() throws InterruptedException {
+        gameOver = new CountDownLatch(playersCount * FRAMES_PER_GAME);
+        Game game = new Game(generator, timer, 0);
+        for (Player player : players) {
+            game.addPlayer(player);
+        }
+        game.start();
+        gameOver.await();
+    }
+}
@@ -0,0 +1,80 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import server.MatchQueue;
+import server.Player;
+import server.SkillMatchMaker;
+import server.TimingWheel;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * players joining the match queues until matches are formed. the formed matches go to a blackhole
+ * instead of starting games.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Dlogger.level=WARN", "-Dlogger.file=", "-Dlogger.console=false"})
+public class MatchMakingBenchmark {
+    private static final int PLAYERS = 1024;
+    private ExecutorService executor;
+    private TimingWheel timer;
+    private MatchQueue queue;
+    private SkillMatchMaker skillMatchMaker;
+    private Player[] players;
+
+    @Setup(Level.Trial)
+    public void setup(Blackhole blackhole) {
+        executor = Executors.newSingleThreadExecutor();
+        timer = new TimingWheel(10, executor);
+        timer.start();
+        queue = new MatchQueue("bench", 4, 2, 1000, timer, blackhole::consume);
+        skillMatchMaker = new SkillMatchMaker(4, timer, blackhole::consume);
+        players = new Player[PLAYERS];
+        for (int i = 0; i < PLAYERS; i++) {
+            players[i] = new Player(new BenchConnection("player" + i, 1, frame -> {
+            }));
+            players[i].setRating(ThreadLocalRandom.current().nextInt(800, 2400));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private Player nextPlayer() {
+        return players[ThreadLocalRandom.current().nextInt(PLAYERS)];
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void joinQueue() {
+        queue.add(nextPlayer());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void joinSkillMatchMaker() {
+        skillMatchMaker.add(nextPlayer());
+    }
+}
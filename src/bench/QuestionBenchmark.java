@@ -0,0 +1,54 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import protocol.Codec;
+import protocol.Frame;
+import protocol.Packet;
+import server.Question;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * turning a question into the bytes that are sent, with and without the cached frame
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Dlogger.level=WARN", "-Dlogger.file=", "-Dlogger.console=false"})
+public class QuestionBenchmark {
+    private Question question;
+
+    @Setup
+    public void setup() {
+        question = new Question("What is the largest big cat in the world?",
+                new String[]{"1. Lion", "2. Tiger", "3. Cheetah", "4. Leopard"}, 2, 5);
+        question.getFrame().buffer(Codec.JSON);
+    }
+
+    @Benchmark
+    public String questionToString() {
+        return question.toString();
+    }
+
+    @Benchmark
+    public ByteBuffer buildFrame() {
+        return Frame.of(Packet.question(question.toString())).buffer(Codec.JSON);
+    }
+
+    @Benchmark
+    public ByteBuffer cachedFrame() {
+        return question.getFrame().buffer(Codec.JSON);
+    }
+}
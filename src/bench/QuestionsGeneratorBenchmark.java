@@ -0,0 +1,66 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import server.Difficulty;
+import server.MemoryQuestionBank;
+import server.Question;
+import server.QuestionsGenerator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * picking the questions of a match from banks of different sizes, by one thread and by many at once
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Dlogger.level=WARN", "-Dlogger.file=", "-Dlogger.console=false"})
+public class QuestionsGeneratorBenchmark {
+    private static final String[] CATEGORIES = {"Animals", "Geography", "Science", "Movies", "History"};
+    @Param({"30", "100000", "1000000"})
+    public int bankSize;
+    private QuestionsGenerator generator;
+
+    @Setup
+    public void setup() {
+        List<Question> questions = new ArrayList<>(bankSize);
+        for (int i = 0; i < bankSize; i++) {
+            questions.add(new Question("question " + i, new String[]{"1. a", "2. b", "3. c", "4. d"}, 1, 5,
+                    CATEGORIES[i % CATEGORIES.length], Difficulty.values()[i % 3]));
+        }
+        generator = new QuestionsGenerator(new MemoryQuestionBank(questions));
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Question[] sampleOneThread() {
+        return generator.getRandomQuestionsSet(5);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Question[] sampleFourThreads() {
+        return generator.getRandomQuestionsSet(5);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Question[] sampleFilteredFourThreads() {
+        return generator.getRandomQuestionsSet(5, "Animals", Difficulty.EASY);
+    }
+}
@@ -0,0 +1,115 @@
+package client;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * decides how a bot answers a question
+ */
+public interface AnswerStrategy {
+    /**
+     * means the bot doesn't answer
+     */
+    int NO_ANSWER = -1;
+
+    /**
+     * @param question text of the question packet, the question line followed by one line for each choice
+     * @return the chosen answer or NO_ANSWER
+     */
+    int choose(String question);
+
+    /**
+     * @return milliseconds the bot waits before sending its answer
+     */
+    default long thinkTime() {
+        return 0;
+    }
+
+    /**
+     * picks any of the choices
+     */
+    static AnswerStrategy random() {
+        return question -> ThreadLocalRandom.current().nextInt(1, choicesCount(question) + 1);
+    }
+
+    /**
+     * looks the question up in the questions the server uses, falls back to a random answer if it's not there
+     *
+     * @param questionsPath the questions JSON of the server
+     */
+    static AnswerStrategy alwaysCorrect(String questionsPath) throws IOException {
+        Map<String, Integer> answers = new HashMap<>();
+        JSONArray questions = new JSONArray(new String(Files.readAllBytes(Paths.get(questionsPath))));
+        for (int i = 0; i < questions.length(); i++) {
+            JSONObject question = questions.getJSONObject(i);
+            answers.put(question.getString("question"), question.getInt("correct"));
+        }
+        AnswerStrategy fallback = random();
+        return question -> {
+            Integer answer = answers.get(questionText(question));
+            return answer == null ? fallback.choose(question) : answer;
+        };
+    }
+
+    /**
+     * answers randomly but only after waiting
+     *
+     * @param delay milliseconds to wait before answering
+     */
+    static AnswerStrategy slow(long delay) {
+        AnswerStrategy random = random();
+        return new AnswerStrategy() {
+            @Override
+            public int choose(String question) {
+                return random.choose(question);
+            }
+
+            @Override
+            public long thinkTime() {
+                return delay;
+            }
+        };
+    }
+
+    /**
+     * never answers, so every round of the bot ends with the time going up
+     */
+    static AnswerStrategy never() {
+        return question -> NO_ANSWER;
+    }
+
+    /**
+     * @param name random, correct, slow or never
+     * @return the strategy with that name or null if there isn't one
+     */
+    static AnswerStrategy fromName(String name, String questionsPath, long slowDelay) throws IOException {
+        return switch (name) {
+            case "random" -> random();
+            case "correct" -> alwaysCorrect(questionsPath);
+            case "slow" -> slow(slowDelay);
+            case "never" -> never();
+            default -> null;
+        };
+    }
+
+    private static int choicesCount(String question) {
+        String[] lines = question.split("\n");
+        return Math.max(1, lines.length - 1);
+    }
+
+    /**
+     * @return the question without its points and choices
+     */
+    private static String questionText(String question) {
+        String firstLine = question.split("\n", 2)[0];
+        int points = firstLine.lastIndexOf(" (");
+        return points == -1 ? firstLine : firstLine.substring(0, points);
+    }
+}
@@ -0,0 +1,153 @@
+package client;
+
+import protocol.Codec;
+import protocol.Packet;
+import protocol.PacketReader;
+import protocol.PacketType;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * a headless client that plays one match on its own. it talks to the server like Client does, but the
+ * answers come from an AnswerStrategy instead of a user.
+ */
+public class Bot implements Runnable {
+    private static final String MATCH_STARTED = "You were added to a match.";
+    private static final String ROUND_RESULT = "Correct answer is:";
+    private final String host;
+    private final int port;
+    private final String name;
+    private final String queue;
+    private final Codec requestedCodec;
+    private final AnswerStrategy strategy;
+    private final ScheduledExecutorService scheduler;
+    private final BotListener listener;
+    private boolean connected;
+    private OutputStream writer;
+    private Codec codec;
+    private long questionTime;
+
+    /**
+     * @param queue          queue to join or null for the default one
+     * @param requestedCodec protocol to ask the server for
+     * @param scheduler      sends the answers of slow strategies
+     */
+    public Bot(String host, int port, String name, String queue, Codec requestedCodec, AnswerStrategy strategy,
+               ScheduledExecutorService scheduler, BotListener listener) {
+        this.host = host;
+        this.port = port;
+        this.name = name;
+        this.queue = queue;
+        this.requestedCodec = requestedCodec;
+        this.strategy = strategy;
+        this.scheduler = scheduler;
+        this.listener = listener;
+        codec = Codec.JSON;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * connects, plays until the match is over and disconnects
+     */
+    @Override
+    public void run() {
+        long start = System.nanoTime();
+        try (Socket socket = new Socket(host, port)) {
+            connected = true;
+            writer = socket.getOutputStream();
+            PacketReader reader = new PacketReader(socket.getInputStream(), Codec.JSON);
+            if (!handshake(reader)) {
+                listener.onError(this, "rejected");
+                return;
+            }
+            long handshakeEnd = System.nanoTime();
+            listener.onHandshake(this, handshakeEnd - start);
+            play(reader, handshakeEnd);
+        } catch (IOException e) {
+            listener.onError(this, connected ? "disconnected" : "connect failed");
+        }
+    }
+
+    private boolean handshake(PacketReader reader) throws IOException {
+        Packet name = Packet.name(this.name).setQueue(queue);
+        if (requestedCodec != Codec.JSON) {
+            name.setProtocol(requestedCodec.getName());
+        }
+        send(name);
+        Packet response = reader.read(new Packet());
+        if (response.getType() != PacketType.RESPONSE || !response.getFlag()) {
+            return false;
+        }
+        Codec accepted = Codec.forName(response.getProtocol());
+        if (accepted != null) {
+            codec = accepted;
+            reader.setCodec(accepted);
+        }
+        return true;
+    }
+
+    private void play(PacketReader reader, long connected) throws IOException {
+        Packet packet = new Packet();
+        while (true) {
+            reader.read(packet);
+            if (packet.getType() == PacketType.QUESTION) {
+                questionTime = System.nanoTime();
+                answer(packet.getText());
+            } else if (packet.getType() == PacketType.MESSAGE) {
+                String message = packet.getText();
+                if (message.startsWith(MATCH_STARTED)) {
+                    listener.onMatched(this, System.nanoTime() - connected);
+                } else if (message.startsWith(ROUND_RESULT) && questionTime != 0) {
+                    listener.onRound(this, System.nanoTime() - questionTime);
+                } else if (isGameOver(message)) {
+                    listener.onGameOver(this);
+                    return;
+                }
+            }
+        }
+    }
+
+    private static boolean isGameOver(String message) {
+        return message.endsWith(" wins!") || message.equals("It's a tie!") || message.equals("Everyone loses");
+    }
+
+    private void answer(String question) {
+        int answer = strategy.choose(question);
+        if (answer == AnswerStrategy.NO_ANSWER) {
+            return;
+        }
+        long thinkTime = strategy.thinkTime();
+        if (thinkTime > 0) {
+            scheduler.schedule(() -> sendQuietly(Packet.answer(answer)), thinkTime, TimeUnit.MILLISECONDS);
+        } else {
+            sendQuietly(Packet.answer(answer));
+        }
+    }
+
+    private void sendQuietly(Packet packet) {
+        try {
+            send(packet);
+        } catch (IOException ignored) {
+            // the reader finds out the connection is gone
+        }
+    }
+
+    private synchronized void send(Packet packet) throws IOException {
+        ByteBuffer frame = codec.encode(packet);
+        writer.write(frame.array(), frame.arrayOffset() + frame.position(), frame.remaining());
+        writer.flush();
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
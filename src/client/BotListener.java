@@ -0,0 +1,33 @@
+package client;
+
+/**
+ * gets told about what happens to a bot. all times are in nanoseconds.
+ */
+public interface BotListener {
+    /**
+     * @param latency time from opening the connection to receiving the response to the name
+     */
+    default void onHandshake(Bot bot, long latency) {
+    }
+
+    /**
+     * @param waited time from the response to the name to the start of the match
+     */
+    default void onMatched(Bot bot, long waited) {
+    }
+
+    /**
+     * @param duration time from receiving the question to receiving the result of the round
+     */
+    default void onRound(Bot bot, long duration) {
+    }
+
+    default void onGameOver(Bot bot) {
+    }
+
+    /**
+     * @param reason what went wrong. the bot stops after an error
+     */
+    default void onError(Bot bot, String reason) {
+    }
+}
@@ -1,43 +1,121 @@
 package client;
 
-import org.json.JSONObject;
+import protocol.Codec;
+import protocol.Packet;
+import protocol.PacketReader;
+import protocol.PacketType;
+import protocol.ProtocolException;
 
-import java.io.BufferedReader;
+import java.io.EOFException;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
+import java.io.OutputStream;
 import java.net.Socket;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.nio.ByteBuffer;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 
 public class Client {
     private static final int PORT = 8000;
-    private static final int REFRESH_TIME = 10;
+    private static final int RESUME_ATTEMPTS = 5;
+    private static final long RESUME_DELAY = 1000; // milliseconds
     private final String HOST = "localhost";
-    private final Socket socket;
-    private final BufferedReader reader;
-    private final PrintWriter writer;
     private final UserInterface user;
-    private final Timer timer;
+    private final BlockingQueue<Event> events;
+    private final Codec requestedCodec;
+    private Socket socket;
+    private PacketReader reader;
+    private OutputStream writer;
+    private Codec codec;
+    private String token; // resumes the session if the connection is lost
+    private boolean waitingForAnswer; // only touched by the main thread
 
-    public Client() throws IOException {
+    /**
+     * @param requestedCodec protocol to ask the server for after connecting
+     */
+    public Client(Codec requestedCodec) throws IOException {
+        this.requestedCodec = requestedCodec;
         user = new UserInterface();
-        socket = new Socket(HOST, PORT);
-        reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-        writer = new PrintWriter(socket.getOutputStream(), true);
-        timer = new Timer();
+        events = new LinkedBlockingQueue<>();
+        openSocket();
         connectToSever();
     }
 
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--leaderboard")) {
+            printLeaderboard(args.length > 1 ? args[1] : null);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--spectate")) {
+            watchMatch(args.length > 1 ? Integer.parseInt(args[1]) : -1);
+            return;
+        }
         try {
-            Client client = new Client();
+            // the compact binary protocol is used unless --json is given
+            boolean json = args.length > 0 && args[0].equals("--json");
+            Client client = new Client(json ? Codec.JSON : Codec.BINARY);
             client.listenToServer();
         } catch (IOException e) {
             System.out.println("Couldn't connect to the server. Exiting...");
         }
     }
 
+    /**
+     * asks the server for the top of the leaderboard and the rank of a name instead of joining a match
+     *
+     * @param name name whose rank is printed too or null for only the top
+     */
+    private static void printLeaderboard(String name) {
+        try (Socket socket = new Socket("localhost", PORT)) {
+            ByteBuffer frame = Codec.JSON.encode(Packet.leaderboard(0, name));
+            socket.getOutputStream().write(frame.array(), frame.arrayOffset() + frame.position(), frame.remaining());
+            PacketReader reader = new PacketReader(socket.getInputStream(), Codec.JSON);
+            Packet packet = reader.read(new Packet());
+            if (packet.getType() != PacketType.RESPONSE || !packet.getFlag()) {
+                System.out.println("The server didn't send the leaderboard.");
+                return;
+            }
+            System.out.println(reader.read(packet).getText());
+        } catch (IOException e) {
+            System.out.println("Couldn't connect to the server. Exiting...");
+        }
+    }
+
+    /**
+     * watches a match and prints everything the server sends until the match ends and the server
+     * closes the connection
+     *
+     * @param matchId id of the match or -1 for the newest one
+     */
+    private static void watchMatch(int matchId) {
+        try (Socket socket = new Socket("localhost", PORT)) {
+            ByteBuffer frame = Codec.JSON.encode(Packet.spectate(matchId));
+            socket.getOutputStream().write(frame.array(), frame.arrayOffset() + frame.position(), frame.remaining());
+            PacketReader reader = new PacketReader(socket.getInputStream(), Codec.JSON);
+            Packet packet = reader.read(new Packet());
+            if (packet.getType() != PacketType.RESPONSE || !packet.getFlag()) {
+                System.out.println("The server didn't let you watch.");
+                return;
+            }
+            while (true) {
+                System.out.println(reader.read(packet).getText());
+            }
+        } catch (EOFException e) {
+            System.out.println("The match is over.");
+        } catch (IOException e) {
+            System.out.println("Lost connection with the server.");
+        }
+    }
+
+    /**
+     * connects to the server. the handshake of every connection starts in JSON.
+     */
+    private void openSocket() throws IOException {
+        socket = new Socket(HOST, PORT);
+        codec = Codec.JSON;
+        reader = new PacketReader(socket.getInputStream(), codec);
+        writer = socket.getOutputStream();
+    }
+
     /**
      * Takes name from user and sends it to the server then waits for response from server
      */
@@ -48,10 +126,21 @@ public class Client {
     }
 
     private void sendNameToSever(String name) {
-        JSONObject nameJson = new JSONObject();
-        nameJson.put("type", "name");
-        nameJson.put("name", name);
-        writer.println(nameJson);
+        Packet packet = Packet.name(name);
+        if (requestedCodec != Codec.JSON) {
+            packet.setProtocol(requestedCodec.getName());
+        }
+        send(packet);
+    }
+
+    private void send(Packet packet) {
+        ByteBuffer frame = codec.encode(packet);
+        try {
+            writer.write(frame.array(), frame.arrayOffset() + frame.position(), frame.remaining());
+            writer.flush();
+        } catch (IOException e) {
+            user.printMessage("An error happened while talking to the server.");
+        }
     }
 
     private void checkConnectionResponse() {
@@ -67,11 +156,13 @@ public class Client {
     private boolean getConnectionResponse() {
         boolean response = false;
         try {
-            String packet = reader.readLine();
-            JSONObject responseJson = new JSONObject(packet);
-            String type = responseJson.getString("type");
-            if (type.equals("response")) {
-                response = responseJson.getBoolean("successful");
+            Packet packet = reader.read(new Packet());
+            if (packet.getType() == PacketType.RESPONSE) {
+                response = packet.getFlag();
+                if (response) {
+                    token = packet.getToken();
+                    useProtocol(Codec.forName(packet.getProtocol()));
+                }
             }
         } catch (IOException ignored) {
             // failed to connect. will return false
@@ -80,111 +171,198 @@ public class Client {
     }
 
     /**
-     * Keeps checking for requests from the sever
+     * switches to the protocol the server accepted. if the server didn't accept any, JSON is kept
+     */
+    private void useProtocol(Codec accepted) {
+        if (accepted != null) {
+            codec = accepted;
+            reader.setCodec(accepted);
+        }
+    }
+
+    /**
+     * starts the threads that read from the server and from the user, then handles their events one by one.
+     * the main thread sleeps on the queue while nothing happens.
      */
     private void listenToServer() {
-        Timer timer = new Timer();
-        TimerTask task = new TimerTask() {
-            @Override
-            public void run() {
-                try {
-                    checkForRequest();
-                } catch (IOException e) {
-                    user.printMessage("An error happened while talking to the server.");
+        startServerReader();
+        Thread.ofPlatform().daemon().name("input-reader").start(this::readFromUser);
+        try {
+            while (true) {
+                Event event = events.take();
+                if (!handle(event)) {
+                    return;
                 }
             }
-        };
-
-        timer.schedule(task, 0, REFRESH_TIME);
+        } catch (InterruptedException ignored) {
+            // exiting
+        }
     }
 
-    private void checkForRequest() throws IOException {
-        if (!reader.ready()) {
-            return;
-        }
-        String packet = reader.readLine();
-        processRequest(packet);
+    private void startServerReader() {
+        PacketReader connectionReader = reader;
+        Thread.ofPlatform().daemon().name("server-reader").start(() -> readFromServer(connectionReader));
     }
 
-    private void processRequest(String request) {
-        JSONObject packetJson = new JSONObject(request);
-        String type = packetJson.getString("type");
-        switch (type) {
-            case ("message") -> sendMessageToUser(packetJson);
-            case ("question") -> sendQuestionToUser(packetJson);
-            default -> user.printMessage("Invalid packet was received");
+    /**
+     * blocks on the socket and puts every packet in the event queue
+     */
+    private void readFromServer(PacketReader reader) {
+        try {
+            while (true) {
+                events.put(Event.packet(reader.read(new Packet())));
+            }
+        } catch (ProtocolException e) {
+            events.add(Event.error("Invalid packet was received"));
+        } catch (IOException e) {
+            events.add(Event.lost());
+        } catch (InterruptedException ignored) {
+            // exiting
         }
     }
 
-    private void sendMessageToUser(JSONObject messageJson) {
-        String message = messageJson.getString("content");
-        user.printMessage(message);
+    /**
+     * connects again and sends the session token so the server puts the client back in its match
+     *
+     * @return true if the session was resumed
+     */
+    private boolean resumeSession() {
+        user.printMessage("Lost connection with the server. Reconnecting...");
+        for (int attempt = 0; attempt < RESUME_ATTEMPTS && token != null; attempt++) {
+            try {
+                Thread.sleep(RESUME_DELAY);
+                openSocket();
+                Packet packet = Packet.resume(token);
+                if (requestedCodec != Codec.JSON) {
+                    packet.setProtocol(requestedCodec.getName());
+                }
+                send(packet);
+                if (getConnectionResponse()) {
+                    startServerReader();
+                    return true;
+                }
+                user.printMessage("The server couldn't find the session.");
+                return false;
+            } catch (IOException e) {
+                // the server isn't reachable yet, try again
+            } catch (InterruptedException e) {
+                return false;
+            }
+        }
+        return false;
     }
 
-    private void sendQuestionToUser(JSONObject questionJson) {
-        String question = questionJson.getString("question");
-        user.clearInput();
-        user.printMessage(question);
-        waitForResponse();
+    /**
+     * blocks on stdin and puts every line the user types in the event queue
+     */
+    private void readFromUser() {
+        String line;
+        try {
+            while ((line = user.readLine()) != null) {
+                events.put(Event.input(line));
+            }
+        } catch (InterruptedException ignored) {
+            // exiting
+        }
     }
 
     /**
-     * waits until the user enters an answer or for a response from the server
-     * indicating the time going up.
+     * @return false if the client should stop
      */
-    private void waitForResponse() {
-        TimerTask task = new TimerTask() {
-            @Override
-            public void run() {
-                checkForResponse();
+    private boolean handle(Event event) {
+        if (event.packet != null) {
+            processRequest(event.packet);
+        } else if (event.input != null) {
+            processInput(event.input);
+        } else if (event.lost) {
+            waitingForAnswer = false;
+            if (!resumeSession()) {
+                user.printMessage("Couldn't reconnect to the server. Exiting...");
+                return false;
             }
-        };
-        timer.schedule(task, 0, REFRESH_TIME);
+        } else {
+            user.printMessage(event.error);
+            return false;
+        }
+        return true;
+    }
 
-        synchronized (this) {
-            try {
-                wait();
-            } catch (InterruptedException ignored) {
-            }
+    /**
+     * any request from the server while a question is open means the time went up
+     */
+    private void processRequest(Packet packet) {
+        if (waitingForAnswer) {
+            waitingForAnswer = false;
+            user.printMessage("time's up!");
+        }
+        switch (packet.getType()) {
+            case MESSAGE -> sendMessageToUser(packet);
+            case QUESTION -> sendQuestionToUser(packet);
+            default -> user.printMessage("Invalid packet was received");
         }
+    }
 
-        task.cancel();
+    private void sendMessageToUser(Packet messagePacket) {
+        String message = messagePacket.getText();
+        user.printMessage(message);
     }
 
-    private void checkForResponse() {
-        if (user.isAnswered()) {
-            int answer = user.getAnswer();
+    private void sendQuestionToUser(Packet questionPacket) {
+        String question = questionPacket.getText();
+        user.printMessage(question);
+        waitingForAnswer = true;
+    }
+
+    /**
+     * sends the answer the moment the user types it. lines typed while there's no question are ignored.
+     */
+    private void processInput(String input) {
+        if (!waitingForAnswer) {
+            return;
+        }
+        try {
+            int answer = Integer.parseInt(input.trim());
+            waitingForAnswer = false;
             sendAnswerToServer(answer);
-            synchronized (this) {
-                notify();
-            }
-        } else if (isPacketRevived()) {
-            synchronized (this) {
-                user.printMessage("time's up!");
-                notify();
-            }
+        } catch (NumberFormatException e) {
+            user.printMessage("Please enter a number");
         }
     }
 
     private void sendAnswerToServer(int answer) {
-        JSONObject answerJson = new JSONObject();
-        answerJson.put("type", "answer");
-        answerJson.put("answer", answer);
-        writer.println(answerJson);
+        send(Packet.answer(answer));
     }
 
     /**
-     * checks if the client received a request from the server
-     *
-     * @return true if a request is available
+     * something that happened on the socket or on stdin. exactly one of the fields is set.
      */
-    private boolean isPacketRevived() {
-        boolean isReceived = false;
-        try {
-            isReceived = reader.ready();
-        } catch (IOException e) {
-            user.printMessage("An error happened while talking to the server.");
+    private static class Event {
+        private final Packet packet;
+        private final String input;
+        private final String error;
+        private final boolean lost;
+
+        private Event(Packet packet, String input, String error, boolean lost) {
+            this.packet = packet;
+            this.input = input;
+            this.error = error;
+            this.lost = lost;
+        }
+
+        private static Event packet(Packet packet) {
+            return new Event(packet, null, null, false);
+        }
+
+        private static Event input(String line) {
+            return new Event(null, line, null, false);
+        }
+
+        private static Event error(String message) {
+            return new Event(null, null, message, false);
+        }
+
+        private static Event lost() {
+            return new Event(null, null, null, true);
         }
-        return isReceived;
     }
-}
\ No newline at end of file
+}
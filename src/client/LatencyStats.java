@@ -0,0 +1,49 @@
+package client;
+
+import java.util.Arrays;
+
+/**
+ * keeps samples of a latency to report its percentiles
+ */
+public class LatencyStats {
+    private long[] samples;
+    private int count;
+
+    public LatencyStats() {
+        samples = new long[1024];
+    }
+
+    public synchronized void record(long nanos) {
+        if (count == samples.length) {
+            samples = Arrays.copyOf(samples, count * 2);
+        }
+        samples[count++] = nanos;
+    }
+
+    public synchronized int getCount() {
+        return count;
+    }
+
+    /**
+     * @param percentile from 0 to 100
+     * @return the sample at that percentile in milliseconds or 0 if there are no samples
+     */
+    public synchronized double percentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100 * count) - 1;
+        return sorted[Math.max(0, Math.min(index, count - 1))] / 1_000_000.0;
+    }
+
+    /**
+     * @return count, p50, p90, p99 and max in milliseconds
+     */
+    @Override
+    public String toString() {
+        return String.format("n=%d p50=%.1fms p90=%.1fms p99=%.1fms max=%.1fms", getCount(), percentile(50),
+                percentile(90), percentile(99), percentile(100));
+    }
+}
@@ -0,0 +1,118 @@
+package client;
+
+import protocol.Codec;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * opens many bot connections to a server, lets them play their matches and reports how it went.
+ * every bot runs on a virtual thread, so thousands of them only need a few OS threads.
+ * <p>
+ * usage: LoadGenerator [--bots=100] [--rate=50] [--strategy=random|correct|slow|never] [--json]
+ * [--queue=name] [--host=localhost] [--port=8000] [--timeout=300]
+ * where rate is new connections per second and timeout is in seconds.
+ */
+public class LoadGenerator implements BotListener {
+    private static final String QUESTIONS_PATH = "resources/questions.json";
+    private static final long SLOW_DELAY = 5000; // milliseconds
+    private final LatencyStats handshakes = new LatencyStats();
+    private final LatencyStats timeToMatch = new LatencyStats();
+    private final LatencyStats rounds = new LatencyStats();
+    private final LongAdder gamesOver = new LongAdder();
+    private final Map<String, AtomicInteger> errors = new ConcurrentHashMap<>();
+    private CountDownLatch finished;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--")) {
+                String[] parts = arg.substring(2).split("=", 2);
+                options.put(parts[0], parts.length > 1 ? parts[1] : "");
+            }
+        }
+        AnswerStrategy strategy = AnswerStrategy.fromName(options.getOrDefault("strategy", "random"),
+                QUESTIONS_PATH, SLOW_DELAY);
+        if (strategy == null) {
+            System.out.println("Unknown strategy " + options.get("strategy"));
+            return;
+        }
+        new LoadGenerator().run(options.getOrDefault("host", "localhost"),
+                Integer.parseInt(options.getOrDefault("port", "8000")),
+                Integer.parseInt(options.getOrDefault("bots", "100")),
+                Double.parseDouble(options.getOrDefault("rate", "50")),
+                options.get("queue"), options.containsKey("json") ? Codec.JSON : Codec.BINARY, strategy,
+                Long.parseLong(options.getOrDefault("timeout", "300")));
+    }
+
+    /**
+     * starts the bots at the given rate and waits until all of them are done or the timeout goes up
+     */
+    public void run(String host, int port, int bots, double rate, String queue, Codec codec,
+                    AnswerStrategy strategy, long timeoutSeconds) throws InterruptedException {
+        finished = new CountDownLatch(bots);
+        long interval = (long) (1_000_000_000 / rate);
+        long start = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+             ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor()) {
+            for (int i = 0; i < bots; i++) {
+                long sleep = start + i * interval - System.nanoTime();
+                if (sleep > 0) {
+                    TimeUnit.NANOSECONDS.sleep(sleep);
+                }
+                executor.execute(new Bot(host, port, "bot" + i, queue, codec, strategy, scheduler, this));
+            }
+            double connectSeconds = (System.nanoTime() - start) / 1e9;
+            boolean done = finished.await(timeoutSeconds, TimeUnit.SECONDS);
+            report(bots, connectSeconds, (System.nanoTime() - start) / 1e9, done);
+            executor.shutdownNow();
+            scheduler.shutdownNow();
+        }
+    }
+
+    private void report(int bots, double connectSeconds, double totalSeconds, boolean done) {
+        System.out.printf("bots: %d, games over for %d, %s%n", bots, gamesOver.sum(),
+                done ? "all done" : "timed out");
+        System.out.printf("connection rate: %.1f/s, total time: %.1fs%n", bots / connectSeconds, totalSeconds);
+        System.out.println("handshake latency: " + handshakes);
+        System.out.println("time to match: " + timeToMatch);
+        System.out.println("round duration: " + rounds);
+        System.out.println("errors: " + (errors.isEmpty() ? "none" : errors));
+    }
+
+    @Override
+    public void onHandshake(Bot bot, long latency) {
+        handshakes.record(latency);
+    }
+
+    @Override
+    public void onMatched(Bot bot, long waited) {
+        timeToMatch.record(waited);
+    }
+
+    @Override
+    public void onRound(Bot bot, long duration) {
+        rounds.record(duration);
+    }
+
+    @Override
+    public void onGameOver(Bot bot) {
+        gamesOver.increment();
+        finished.countDown();
+    }
+
+    @Override
+    public void onError(Bot bot, String reason) {
+        errors.computeIfAbsent(reason, r -> new AtomicInteger()).incrementAndGet();
+        finished.countDown();
+    }
+}
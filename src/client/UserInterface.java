@@ -1,7 +1,5 @@
 package client;
 
-import java.io.IOException;
-import java.util.InputMismatchException;
 import java.util.Scanner;
 
 public class UserInterface {
@@ -21,35 +19,12 @@ public class UserInterface {
         System.out.println(message);
     }
 
-    public void clearInput() {
-        try {
-            while (System.in.available() != 0) {
-                scanner.nextLine();
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-    }
-
-    public boolean isAnswered() {
-        boolean isAnswered = false;
-        try {
-            isAnswered = System.in.available() != 0;
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        return isAnswered;
-    }
-
-
-    public int getAnswer() {
-        while (true) {
-            try {
-                return scanner.nextInt();
-            } catch (InputMismatchException e) {
-                scanner.nextLine();
-                System.out.println("Please enter a number");
-            }
-        }
+    /**
+     * blocks until the user types a line
+     *
+     * @return the line or null if the input was closed
+     */
+    public String readLine() {
+        return scanner.hasNextLine() ? scanner.nextLine() : null;
     }
 }
@@ -0,0 +1,101 @@
+package protocol;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * compact protocol. every frame is a 4 bytes length followed by that many bytes:
+ * a 1 byte opcode and the payload of the packet.
+ * <ul>
+ * <li>name, message and question: the UTF-8 text</li>
+ * <li>response: 1 byte, 1 if the connection was successful</li>
+ * <li>answer: the answer as a 4 bytes int</li>
+ * <li>resume: the UTF-8 token</li>
+ * <li>leaderboard: the count as a 4 bytes int followed by the UTF-8 name, which is empty if there isn't one</li>
+ * <li>spectate: the match id as a 4 bytes int</li>
+ * </ul>
+ */
+public class BinaryCodec implements Codec {
+    private static final int HEADER_SIZE = 4;
+
+    BinaryCodec() {
+    }
+
+    @Override
+    public String getName() {
+        return "binary";
+    }
+
+    @Override
+    public ByteBuffer encode(Packet packet) {
+        String textField = packet.getType() == PacketType.RESUME ? packet.getToken() : packet.getText();
+        byte[] text = textField == null ? null : textField.getBytes(StandardCharsets.UTF_8);
+        int payloadSize = switch (packet.getType()) {
+            case NAME, MESSAGE, QUESTION, RESUME -> text.length;
+            case RESPONSE -> 1;
+            case ANSWER, SPECTATE -> 4;
+            case LEADERBOARD -> 4 + (text == null ? 0 : text.length);
+        };
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + 1 + payloadSize);
+        buffer.putInt(1 + payloadSize);
+        buffer.put(packet.getType().getOpcode());
+        switch (packet.getType()) {
+            case NAME, MESSAGE, QUESTION, RESUME -> buffer.put(text);
+            case RESPONSE -> buffer.put((byte) (packet.getFlag() ? 1 : 0));
+            case ANSWER, SPECTATE -> buffer.putInt(packet.getNumber());
+            case LEADERBOARD -> {
+                buffer.putInt(packet.getNumber());
+                if (text != null) {
+                    buffer.put(text);
+                }
+            }
+        }
+        return buffer.flip();
+    }
+
+    @Override
+    public boolean decode(ByteBuffer in, Packet out) throws ProtocolException {
+        if (in.remaining() < HEADER_SIZE) {
+            return false;
+        }
+        int length = in.getInt(in.position());
+        if (length < 1 || length > MAX_FRAME_SIZE) {
+            throw new ProtocolException("invalid frame length " + length);
+        }
+        if (in.remaining() < HEADER_SIZE + length) {
+            return false;
+        }
+        int start = in.position() + HEADER_SIZE;
+        PacketType type = PacketType.fromOpcode(in.get(start));
+        if (type == null) {
+            throw new ProtocolException("unknown opcode");
+        }
+        int payloadSize = length - 1;
+        out.reset().setType(type);
+        switch (type) {
+            case NAME, MESSAGE, QUESTION -> out.setText(new String(in.array(), in.arrayOffset() + start + 1,
+                    payloadSize, StandardCharsets.UTF_8));
+            case RESUME -> out.setToken(new String(in.array(), in.arrayOffset() + start + 1, payloadSize,
+                    StandardCharsets.UTF_8));
+            case RESPONSE -> out.setFlag(payloadSize > 0 && in.get(start + 1) == 1);
+            case ANSWER, SPECTATE -> {
+                if (payloadSize != 4) {
+                    throw new ProtocolException("invalid " + type.getJsonName() + " frame");
+                }
+                out.setNumber(in.getInt(start + 1));
+            }
+            case LEADERBOARD -> {
+                if (payloadSize < 4) {
+                    throw new ProtocolException("invalid leaderboard frame");
+                }
+                out.setNumber(in.getInt(start + 1));
+                if (payloadSize > 4) {
+                    out.setText(new String(in.array(), in.arrayOffset() + start + 5, payloadSize - 4,
+                            StandardCharsets.UTF_8));
+                }
+            }
+        }
+        in.position(start + length);
+        return true;
+    }
+}
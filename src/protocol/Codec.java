@@ -0,0 +1,51 @@
+package protocol;
+
+import java.nio.ByteBuffer;
+
+/**
+ * turns packets into bytes and back. the name packet and the response are always sent as JSON,
+ * and if the client asked for another protocol in the name packet and the server accepted it in the
+ * response, both sides switch to it for the rest of the connection.
+ */
+public interface Codec {
+    Codec JSON = new JsonCodec();
+    Codec BINARY = new BinaryCodec();
+    /**
+     * bytes in the biggest frame a codec accepts. a bigger frame is rejected before all of it arrives.
+     */
+    int MAX_FRAME_SIZE = 64 * 1024;
+
+    /**
+     * @return name used to ask for this codec in the name packet
+     */
+    String getName();
+
+    /**
+     * @param packet packet to encode
+     * @return a buffer holding one complete frame, ready to be written
+     */
+    ByteBuffer encode(Packet packet);
+
+    /**
+     * decodes the next frame in the buffer if all of it has arrived. if it hasn't, the position
+     * of the buffer doesn't change.
+     *
+     * @param in  bytes received so far, ready to be read
+     * @param out packet to decode into
+     * @return true if a packet was decoded
+     * @throws ProtocolException if the frame is invalid or longer than MAX_FRAME_SIZE
+     */
+    boolean decode(ByteBuffer in, Packet out) throws ProtocolException;
+
+    /**
+     * @return the codec with that name or null if there isn't one
+     */
+    static Codec forName(String name) {
+        if (JSON.getName().equals(name)) {
+            return JSON;
+        } else if (BINARY.getName().equals(name)) {
+            return BINARY;
+        }
+        return null;
+    }
+}
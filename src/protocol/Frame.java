@@ -0,0 +1,71 @@
+package protocol;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * a packet that is encoded at most once for each codec. when the same packet goes to many
+ * connections, all of them write the same bytes instead of encoding it again.
+ */
+public final class Frame {
+    private final Packet packet;
+    private volatile byte[] json;
+    private volatile byte[] binary;
+
+    private Frame(Packet packet) {
+        this.packet = packet;
+    }
+
+    /**
+     * @param packet packet to be sent. it must not be changed after the frame is created
+     */
+    public static Frame of(Packet packet) {
+        return new Frame(packet);
+    }
+
+    public PacketType getType() {
+        return packet.getType();
+    }
+
+    /**
+     * @return a read-only buffer over the encoded packet, with its own position so it can be written by one connection
+     */
+    public ByteBuffer buffer(Codec codec) {
+        return ByteBuffer.wrap(bytes(codec)).asReadOnlyBuffer();
+    }
+
+    public void writeTo(OutputStream out, Codec codec) throws IOException {
+        out.write(bytes(codec));
+    }
+
+    public int size(Codec codec) {
+        return bytes(codec).length;
+    }
+
+    private byte[] bytes(Codec codec) {
+        // encoding twice in a race is harmless, both results are the same
+        if (codec == Codec.BINARY) {
+            if (binary == null) {
+                binary = encode(codec);
+            }
+            return binary;
+        }
+        if (json == null) {
+            json = encode(codec);
+        }
+        return json;
+    }
+
+    private byte[] encode(Codec codec) {
+        ByteBuffer buffer = codec.encode(packet);
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    @Override
+    public String toString() {
+        return packet.toString();
+    }
+}
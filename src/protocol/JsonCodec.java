@@ -0,0 +1,439 @@
+package protocol;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * the original protocol: one JSON object per line. packets are parsed straight from the received bytes
+ * with a small scanner that only knows our flat packet schema, so decoding an answer allocates nothing
+ * and a line can't be longer than MAX_FRAME_SIZE.
+ */
+public class JsonCodec implements Codec {
+    private static final int TYPE = 0;
+    private static final int NAME = 1;
+    private static final int QUEUE = 2;
+    private static final int PROTOCOL = 3;
+    private static final int SUCCESSFUL = 4;
+    private static final int CONTENT = 5;
+    private static final int QUESTION = 6;
+    private static final int ANSWER = 7;
+    private static final int TOKEN = 8;
+    private static final int COUNT = 9;
+    private static final int MATCH = 10;
+    private static final int UNKNOWN = -1;
+    private static final byte[][] KEYS = {ascii("type"), ascii("name"), ascii("queue"), ascii("protocol"),
+            ascii("successful"), ascii("content"), ascii("question"), ascii("answer"), ascii("token"), ascii("count"), ascii("match")};
+    private static final PacketType[] TYPES = PacketType.values();
+    private static final byte[][] TYPE_NAMES = new byte[TYPES.length][];
+
+    static {
+        for (PacketType type : TYPES) {
+            TYPE_NAMES[type.ordinal()] = ascii(type.getJsonName());
+        }
+    }
+
+    JsonCodec() {
+    }
+
+    @Override
+    public String getName() {
+        return "json";
+    }
+
+    @Override
+    public ByteBuffer encode(Packet packet) {
+        StringBuilder json = new StringBuilder(64);
+        json.append("{\"type\":\"").append(packet.getType().getJsonName()).append('"');
+        switch (packet.getType()) {
+            case NAME -> {
+                appendString(json, "name", packet.getText());
+                appendString(json, "queue", packet.getQueue());
+                appendString(json, "protocol", packet.getProtocol());
+            }
+            case RESPONSE -> {
+                json.append(",\"successful\":").append(packet.getFlag());
+                appendString(json, "protocol", packet.getProtocol());
+                appendString(json, "token", packet.getToken());
+            }
+            case MESSAGE -> appendString(json, "content", packet.getText());
+            case QUESTION -> appendString(json, "question", packet.getText());
+            case ANSWER -> json.append(",\"answer\":").append(packet.getNumber());
+            case RESUME -> {
+                appendString(json, "token", packet.getToken());
+                appendString(json, "protocol", packet.getProtocol());
+            }
+            case LEADERBOARD -> {
+                json.append(",\"count\":").append(packet.getNumber());
+                appendString(json, "name", packet.getText());
+            }
+            case SPECTATE -> {
+                json.append(",\"match\":").append(packet.getNumber());
+                appendString(json, "protocol", packet.getProtocol());
+            }
+        }
+        json.append("}\n");
+        return ByteBuffer.wrap(json.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * appends a string field if it has a value
+     */
+    private static void appendString(StringBuilder json, String key, String value) {
+        if (value == null) {
+            return;
+        }
+        json.append(",\"").append(key).append("\":\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> json.append("\\\"");
+                case '\\' -> json.append("\\\\");
+                case '\n' -> json.append("\\n");
+                case '\r' -> json.append("\\r");
+                case '\t' -> json.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+                }
+            }
+        }
+        json.append('"');
+    }
+
+    @Override
+    public boolean decode(ByteBuffer in, Packet out) throws ProtocolException {
+        int start = in.position();
+        int end = -1;
+        int limit = Math.min(in.limit(), start + MAX_FRAME_SIZE + 1);
+        for (int i = start; i < limit; i++) {
+            if (in.get(i) == '\n') {
+                end = i;
+                break;
+            }
+        }
+        if (end == -1) {
+            if (limit - start > MAX_FRAME_SIZE) {
+                // drop what arrived so far, the rest of the line will be skipped as another invalid packet
+                in.position(in.limit());
+                throw new ProtocolException("frame longer than " + MAX_FRAME_SIZE + " bytes");
+            }
+            return false;
+        }
+        // the line is consumed before parsing so an invalid one can be skipped
+        in.position(end + 1);
+        parse(in, start, end, out.reset());
+        return true;
+    }
+
+    private static void parse(ByteBuffer in, int start, int end, Packet out) throws ProtocolException {
+        int i = expect(in, skipWhitespace(in, start, end), end, '{');
+        PacketType type = null;
+        int seen = 0;
+        i = skipWhitespace(in, i, end);
+        if (i < end && in.get(i) == '}') {
+            i++;
+        } else {
+            while (true) {
+                int keyStop = stringEnd(in, i, end);
+                int key = keyIndex(in, i + 1, keyStop);
+                i = skipWhitespace(in, expect(in, skipWhitespace(in, keyStop + 1, end), end, ':'), end);
+                i = switch (key) {
+                    case TYPE -> {
+                        int stop = stringEnd(in, i, end);
+                        type = typeOf(in, i + 1, stop);
+                        yield stop + 1;
+                    }
+                    case NAME, CONTENT, QUESTION -> {
+                        int stop = stringEnd(in, i, end);
+                        out.setText(decodeString(in, i + 1, stop));
+                        yield stop + 1;
+                    }
+                    case QUEUE, PROTOCOL, TOKEN -> {
+                        if (in.get(i) == 'n') {
+                            yield literalEnd(in, i, end, "null");
+                        }
+                        int stop = stringEnd(in, i, end);
+                        String value = decodeString(in, i + 1, stop);
+                        if (key == QUEUE) {
+                            out.setQueue(value);
+                        } else if (key == PROTOCOL) {
+                            out.setProtocol(value);
+                        } else {
+                            out.setToken(value);
+                        }
+                        yield stop + 1;
+                    }
+                    case SUCCESSFUL -> {
+                        boolean flag = in.get(i) == 't';
+                        out.setFlag(flag);
+                        yield literalEnd(in, i, end, flag ? "true" : "false");
+                    }
+                    case ANSWER, COUNT, MATCH -> {
+                        int stop = numberEnd(in, i, end);
+                        out.setNumber(parseInt(in, i, stop));
+                        yield stop;
+                    }
+                    default -> skipValue(in, i, end);
+                };
+                if (key != UNKNOWN) {
+                    seen |= 1 << key;
+                }
+                i = skipWhitespace(in, i, end);
+                if (i < end && in.get(i) == ',') {
+                    i = skipWhitespace(in, i + 1, end);
+                } else {
+                    i = expect(in, i, end, '}');
+                    break;
+                }
+            }
+        }
+        if (skipWhitespace(in, i, end) != end) {
+            throw new ProtocolException("unexpected data after the packet");
+        }
+        if (type == null) {
+            throw new ProtocolException("unknown packet type");
+        }
+        int required = switch (type) {
+            case NAME -> NAME;
+            case RESPONSE -> SUCCESSFUL;
+            case MESSAGE -> CONTENT;
+            case QUESTION -> QUESTION;
+            case ANSWER -> ANSWER;
+            case RESUME -> TOKEN;
+            case LEADERBOARD -> COUNT;
+            case SPECTATE -> MATCH;
+        };
+        if ((seen & 1 << required) == 0) {
+            throw new ProtocolException("missing " + new String(KEYS[required], StandardCharsets.US_ASCII));
+        }
+        out.setType(type);
+    }
+
+    private static int skipWhitespace(ByteBuffer in, int i, int end) {
+        while (i < end) {
+            byte c = in.get(i);
+            if (c != ' ' && c != '\t' && c != '\r' && c != '\n') {
+                break;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * @return the index after the expected character
+     */
+    private static int expect(ByteBuffer in, int i, int end, char expected) throws ProtocolException {
+        if (i >= end || in.get(i) != expected) {
+            throw new ProtocolException("expected '" + expected + "'");
+        }
+        return i + 1;
+    }
+
+    /**
+     * @param i index of the opening quote
+     * @return index of the closing quote
+     */
+    private static int stringEnd(ByteBuffer in, int i, int end) throws ProtocolException {
+        if (i >= end || in.get(i) != '"') {
+            throw new ProtocolException("expected a string");
+        }
+        for (i++; i < end; i++) {
+            byte c = in.get(i);
+            if (c == '"') {
+                return i;
+            } else if (c == '\\') {
+                i++;
+            } else if (c >= 0 && c < 0x20) {
+                throw new ProtocolException("control character in a string");
+            }
+        }
+        throw new ProtocolException("unterminated string");
+    }
+
+    private static int literalEnd(ByteBuffer in, int i, int end, String literal) throws ProtocolException {
+        if (end - i < literal.length()) {
+            throw new ProtocolException("expected " + literal);
+        }
+        for (int j = 0; j < literal.length(); j++) {
+            if (in.get(i + j) != literal.charAt(j)) {
+                throw new ProtocolException("expected " + literal);
+            }
+        }
+        return i + literal.length();
+    }
+
+    private static int numberEnd(ByteBuffer in, int i, int end) throws ProtocolException {
+        int start = i;
+        if (i < end && in.get(i) == '-') {
+            i++;
+        }
+        int digits = i;
+        while (i < end && in.get(i) >= '0' && in.get(i) <= '9') {
+            i++;
+        }
+        if (i == digits) {
+            throw new ProtocolException("expected a number");
+        }
+        if (i - start > 11) {
+            throw new ProtocolException("number out of range");
+        }
+        return i;
+    }
+
+    private static int parseInt(ByteBuffer in, int start, int stop) throws ProtocolException {
+        boolean negative = in.get(start) == '-';
+        long value = 0;
+        for (int i = negative ? start + 1 : start; i < stop; i++) {
+            value = value * 10 + (in.get(i) - '0');
+        }
+        value = negative ? -value : value;
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new ProtocolException("number out of range");
+        }
+        return (int) value;
+    }
+
+    /**
+     * skips the value of a field the packet doesn't use
+     *
+     * @return the index after the value
+     */
+    private static int skipValue(ByteBuffer in, int i, int end) throws ProtocolException {
+        if (i >= end) {
+            throw new ProtocolException("expected a value");
+        }
+        byte c = in.get(i);
+        if (c == '"') {
+            return stringEnd(in, i, end) + 1;
+        } else if (c == '{' || c == '[') {
+            int depth = 0;
+            for (; i < end; i++) {
+                c = in.get(i);
+                if (c == '"') {
+                    i = stringEnd(in, i, end);
+                } else if (c == '{' || c == '[') {
+                    depth++;
+                } else if ((c == '}' || c == ']') && --depth == 0) {
+                    return i + 1;
+                }
+            }
+            throw new ProtocolException("unterminated value");
+        } else if (c == 't') {
+            return literalEnd(in, i, end, "true");
+        } else if (c == 'f') {
+            return literalEnd(in, i, end, "false");
+        } else if (c == 'n') {
+            return literalEnd(in, i, end, "null");
+        }
+        i = numberEnd(in, i, end);
+        // fractions and exponents of numbers nobody reads
+        while (i < end && (in.get(i) == '.' || in.get(i) == 'e' || in.get(i) == 'E' || in.get(i) == '+'
+                || in.get(i) == '-' || (in.get(i) >= '0' && in.get(i) <= '9'))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int keyIndex(ByteBuffer in, int start, int stop) {
+        for (int key = 0; key < KEYS.length; key++) {
+            if (matches(in, start, stop, KEYS[key])) {
+                return key;
+            }
+        }
+        return UNKNOWN;
+    }
+
+    private static PacketType typeOf(ByteBuffer in, int start, int stop) {
+        for (PacketType type : TYPES) {
+            if (matches(in, start, stop, TYPE_NAMES[type.ordinal()])) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    private static boolean matches(ByteBuffer in, int start, int stop, byte[] expected) {
+        if (stop - start != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if (in.get(start + i) != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param start index after the opening quote
+     * @param stop  index of the closing quote
+     */
+    private static String decodeString(ByteBuffer in, int start, int stop) throws ProtocolException {
+        int escape = indexOf(in, start, stop, '\\');
+        if (escape == stop) {
+            return utf8(in, start, stop);
+        }
+        StringBuilder s = new StringBuilder(stop - start);
+        int i = start;
+        while (true) {
+            s.append(utf8(in, i, escape));
+            if (escape == stop) {
+                return s.toString();
+            }
+            i = escape + 2;
+            switch (in.get(escape + 1)) {
+                case '"' -> s.append('"');
+                case '\\' -> s.append('\\');
+                case '/' -> s.append('/');
+                case 'b' -> s.append('\b');
+                case 'f' -> s.append('\f');
+                case 'n' -> s.append('\n');
+                case 'r' -> s.append('\r');
+                case 't' -> s.append('\t');
+                case 'u' -> {
+                    if (stop - i < 4) {
+                        throw new ProtocolException("invalid escape");
+                    }
+                    int code = 0;
+                    for (int j = i; j < i + 4; j++) {
+                        int digit = Character.digit(in.get(j), 16);
+                        if (digit < 0) {
+                            throw new ProtocolException("invalid escape");
+                        }
+                        code = code * 16 + digit;
+                    }
+                    s.append((char) code);
+                    i += 4;
+                }
+                default -> throw new ProtocolException("invalid escape");
+            }
+            escape = indexOf(in, i, stop, '\\');
+        }
+    }
+
+    private static int indexOf(ByteBuffer in, int start, int stop, char c) {
+        for (int i = start; i < stop; i++) {
+            if (in.get(i) == c) {
+                return i;
+            }
+        }
+        return stop;
+    }
+
+    private static String utf8(ByteBuffer in, int start, int stop) {
+        if (in.hasArray()) {
+            return new String(in.array(), in.arrayOffset() + start, stop - start, StandardCharsets.UTF_8);
+        }
+        byte[] bytes = new byte[stop - start];
+        in.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,142 @@
+package protocol;
+
+/**
+ * a packet of any type. it only has the few fields our packets use, and it's mutable so a reader
+ * can decode every packet of a connection into the same object.
+ * <ul>
+ * <li>name: text is the player name, queue and protocol are optional</li>
+ * <li>response: flag tells if the connection was successful, protocol is the accepted protocol and token is
+ * the session token the client can use to resume after losing the connection</li>
+ * <li>message: text is the content</li>
+ * <li>question: text is the question</li>
+ * <li>answer: number is the chosen answer</li>
+ * <li>resume: token is the session to resume, protocol is optional like in the name packet</li>
+ * <li>leaderboard: number is how many of the best players to list, 0 for the default, and text is an
+ * optional name whose rank is added</li>
+ * <li>spectate: number is the id of the match to watch, -1 for the newest one, protocol is optional like in
+ * the name packet</li>
+ * </ul>
+ */
+public class Packet {
+    private PacketType type;
+    private String text;
+    private int number;
+    private boolean flag;
+    private String queue;
+    private String protocol;
+    private String token;
+
+    public static Packet name(String name) {
+        return new Packet().setType(PacketType.NAME).setText(name);
+    }
+
+    public static Packet response(boolean successful) {
+        return new Packet().setType(PacketType.RESPONSE).setFlag(successful);
+    }
+
+    public static Packet message(String content) {
+        return new Packet().setType(PacketType.MESSAGE).setText(content);
+    }
+
+    public static Packet question(String question) {
+        return new Packet().setType(PacketType.QUESTION).setText(question);
+    }
+
+    public static Packet answer(int answer) {
+        return new Packet().setType(PacketType.ANSWER).setNumber(answer);
+    }
+
+    public static Packet resume(String token) {
+        return new Packet().setType(PacketType.RESUME).setToken(token);
+    }
+
+    public static Packet leaderboard(int count, String name) {
+        return new Packet().setType(PacketType.LEADERBOARD).setNumber(count).setText(name);
+    }
+
+    public static Packet spectate(int matchId) {
+        return new Packet().setType(PacketType.SPECTATE).setNumber(matchId);
+    }
+
+    /**
+     * clears all fields so the packet can be decoded into again
+     */
+    public Packet reset() {
+        type = null;
+        text = null;
+        number = 0;
+        flag = false;
+        queue = null;
+        protocol = null;
+        token = null;
+        return this;
+    }
+
+    public PacketType getType() {
+        return type;
+    }
+
+    public Packet setType(PacketType type) {
+        this.type = type;
+        return this;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public Packet setText(String text) {
+        this.text = text;
+        return this;
+    }
+
+    public int getNumber() {
+        return number;
+    }
+
+    public Packet setNumber(int number) {
+        this.number = number;
+        return this;
+    }
+
+    public boolean getFlag() {
+        return flag;
+    }
+
+    public Packet setFlag(boolean flag) {
+        this.flag = flag;
+        return this;
+    }
+
+    public String getQueue() {
+        return queue;
+    }
+
+    public Packet setQueue(String queue) {
+        this.queue = queue;
+        return this;
+    }
+
+    public String getProtocol() {
+        return protocol;
+    }
+
+    public Packet setProtocol(String protocol) {
+        this.protocol = protocol;
+        return this;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public Packet setToken(String token) {
+        this.token = token;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return type == null ? "empty packet" : type.getJsonName() + " packet";
+    }
+}
@@ -0,0 +1,72 @@
+package protocol;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * reads packets from a blocking stream. bytes that arrive after a packet are kept for the next one,
+ * and the codec can be changed between packets after the protocol is negotiated.
+ */
+public class PacketReader {
+    private static final int BUFFER_SIZE = 4096;
+    private final InputStream in;
+    private ByteBuffer buffer;
+    private Codec codec;
+
+    public PacketReader(InputStream in, Codec codec) {
+        this.in = in;
+        this.codec = codec;
+        buffer = ByteBuffer.allocate(BUFFER_SIZE).flip();
+    }
+
+    public void setCodec(Codec codec) {
+        this.codec = codec;
+    }
+
+    /**
+     * blocks until a whole packet arrives
+     *
+     * @param out packet to decode into
+     * @return the decoded packet
+     * @throws EOFException      if the stream ended
+     * @throws ProtocolException if an invalid packet was received
+     */
+    public Packet read(Packet out) throws IOException {
+        while (!codec.decode(buffer, out)) {
+            fill();
+        }
+        return out;
+    }
+
+    /**
+     * @return true if there are bytes that can be read without blocking
+     */
+    public boolean ready() throws IOException {
+        return buffer.hasRemaining() || in.available() > 0;
+    }
+
+    private void fill() throws IOException {
+        buffer.compact();
+        if (!buffer.hasRemaining()) {
+            ByteBuffer bigger = ByteBuffer.allocate(buffer.capacity() * 2);
+            buffer.flip();
+            bigger.put(buffer);
+            buffer = bigger;
+        }
+        int count;
+        try {
+            count = in.read(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        } catch (IOException e) {
+            buffer.flip(); // keeps what was already read for the next try, like after a read timeout
+            throw e;
+        }
+        if (count < 0) {
+            buffer.flip();
+            throw new EOFException("connection closed");
+        }
+        buffer.position(buffer.position() + count);
+        buffer.flip();
+    }
+}
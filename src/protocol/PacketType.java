@@ -0,0 +1,57 @@
+package protocol;
+
+/**
+ * every kind of packet the client and the server exchange, with its JSON type name and binary opcode
+ */
+public enum PacketType {
+    NAME("name", 1),
+    RESPONSE("response", 2),
+    MESSAGE("message", 3),
+    QUESTION("question", 4),
+    ANSWER("answer", 5),
+    RESUME("resume", 6),
+    LEADERBOARD("leaderboard", 7),
+    SPECTATE("spectate", 8);
+
+    private static final PacketType[] byOpcode = new PacketType[256];
+    private final String jsonName;
+    private final byte opcode;
+
+    static {
+        for (PacketType type : values()) {
+            byOpcode[type.opcode & 0xFF] = type;
+        }
+    }
+
+    PacketType(String jsonName, int opcode) {
+        this.jsonName = jsonName;
+        this.opcode = (byte) opcode;
+    }
+
+    public String getJsonName() {
+        return jsonName;
+    }
+
+    public byte getOpcode() {
+        return opcode;
+    }
+
+    /**
+     * @return the type with that JSON name or null if there isn't one
+     */
+    public static PacketType fromJsonName(String name) {
+        for (PacketType type : values()) {
+            if (type.jsonName.equals(name)) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the type with that opcode or null if there isn't one
+     */
+    public static PacketType fromOpcode(byte opcode) {
+        return byOpcode[opcode & 0xFF];
+    }
+}
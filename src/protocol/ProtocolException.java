@@ -0,0 +1,14 @@
+package protocol;
+
+import java.io.IOException;
+
+/**
+ * thrown when the other side sends bytes that aren't a valid packet
+ */
+public class ProtocolException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    public ProtocolException(String message) {
+        super(message);
+    }
+}
@@ -4,11 +4,20 @@ public class Answer {
     private final int questionId;
     private final int answerNumber;
     private final int playerID;
+    private final long latency;
 
     public Answer(int questionId, int answerNumber, int playerID) {
+        this(questionId, answerNumber, playerID, -1);
+    }
+
+    /**
+     * @param latency nanoseconds from sending the question until the answer arrived or -1 if unknown
+     */
+    public Answer(int questionId, int answerNumber, int playerID, long latency) {
         this.questionId = questionId;
         this.answerNumber = answerNumber;
         this.playerID = playerID;
+        this.latency = latency;
     }
 
     public int getQuestionId() {
@@ -22,4 +31,8 @@ public class Answer {
     public int getAnswerNumber() {
         return answerNumber;
     }
+
+    public long getLatency() {
+        return latency;
+    }
 }
@@ -0,0 +1,96 @@
+package server;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * collects the answers of one round. every player has a slot so answers can be recorded
+ * from any thread without locks, and the round is told it's over as soon as its outcome is
+ * decided: when the first correct answer arrives or when the last player answers.
+ */
+public class AnswerCollector {
+    private final Question question;
+    private final AtomicReferenceArray<Answer> slots;
+    private final AtomicReferenceArray<Answer> arrivals;
+    private final AtomicInteger arrivedCount;
+    private final AtomicReference<Answer> firstCorrect;
+    private final AtomicBoolean decided;
+    private final Runnable onDecided;
+
+    /**
+     * @param question     the question of the round
+     * @param playersCount number of slots
+     * @param onDecided    gets called once when the outcome of the round is known
+     */
+    public AnswerCollector(Question question, int playersCount, Runnable onDecided) {
+        this.question = question;
+        this.onDecided = onDecided;
+        slots = new AtomicReferenceArray<>(playersCount);
+        arrivals = new AtomicReferenceArray<>(playersCount);
+        arrivedCount = new AtomicInteger();
+        firstCorrect = new AtomicReference<>();
+        decided = new AtomicBoolean();
+    }
+
+    /**
+     * records the answer of a player. only the first answer of each slot counts.
+     *
+     * @param slot   slot of the player who answered
+     * @param answer answer sent by the player
+     */
+    public void record(int slot, Answer answer) {
+        if (!slots.compareAndSet(slot, null, answer)) {
+            return;
+        }
+        int order = arrivedCount.getAndIncrement();
+        arrivals.set(order, answer);
+        if (isCorrect(answer) && firstCorrect.compareAndSet(null, answer)) {
+            decide();
+        } else if (order == slots.length() - 1) {
+            decide();
+        }
+    }
+
+    private boolean isCorrect(Answer answer) {
+        if (answer.getQuestionId() == question.getId()) {
+            return answer.getAnswerNumber() == question.getCorrectAnswer();
+        } else {
+            return false;
+        }
+    }
+
+    private void decide() {
+        if (decided.compareAndSet(false, true)) {
+            onDecided.run();
+        }
+    }
+
+    /**
+     * @return the first correct answer or null if no one answered correctly
+     */
+    public Answer getFirstCorrect() {
+        return firstCorrect.get();
+    }
+
+    /**
+     * @param slot slot of a player
+     * @return the answer of that player or null if it didn't arrive yet
+     */
+    public Answer getAnswer(int slot) {
+        return slots.get(slot);
+    }
+
+    /**
+     * @param order position in the order of arrival
+     * @return the answer that arrived in that position or null if it didn't arrive yet
+     */
+    public Answer getArrival(int order) {
+        return arrivals.get(order);
+    }
+
+    public int getArrivedCount() {
+        return Math.min(arrivedCount.get(), slots.length());
+    }
+}
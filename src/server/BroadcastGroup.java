@@ -0,0 +1,98 @@
+package server;
+
+import protocol.Frame;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * connections that all get the same frames, like the spectators of a game. a frame is encoded at most once
+ * for each codec however many members get it, and sending never waits for a member: every member has its
+ * own outbound queue, and a member whose queue is full is dropped. members on a selector loop are grouped
+ * by their loop so a frame costs one task for each loop instead of one for each member.
+ */
+public class BroadcastGroup {
+    private final Map<SelectorLoop, Set<NioPlayerSocket>> loops;
+    private final Set<Connection> others; // connections without a loop, they get their frames one by one
+    private volatile boolean closed;
+
+    public BroadcastGroup() {
+        loops = new ConcurrentHashMap<>();
+        others = ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * adds a member until it's closed
+     *
+     * @return false if the group was already closed
+     */
+    public boolean add(Connection connection) {
+        if (connection instanceof NioPlayerSocket socket) {
+            loops.computeIfAbsent(socket.getLoop(), loop -> ConcurrentHashMap.newKeySet()).add(socket);
+        } else {
+            others.add(connection);
+        }
+        // checked after adding so either this sees the close or the close sees the new member
+        if (closed) {
+            remove(connection);
+            return false;
+        }
+        connection.onClose(() -> remove(connection));
+        return true;
+    }
+
+    private void remove(Connection connection) {
+        if (connection instanceof NioPlayerSocket socket) {
+            Set<NioPlayerSocket> members = loops.get(socket.getLoop());
+            if (members != null) {
+                members.remove(socket);
+            }
+        } else {
+            others.remove(connection);
+        }
+    }
+
+    /**
+     * sends a frame to every member without waiting for any of them
+     */
+    public void send(Frame frame) {
+        for (Map.Entry<SelectorLoop, Set<NioPlayerSocket>> entry : loops.entrySet()) {
+            Set<NioPlayerSocket> members = entry.getValue();
+            if (members.isEmpty()) {
+                continue;
+            }
+            entry.getKey().execute(() -> {
+                for (NioPlayerSocket member : members) {
+                    member.sendOnLoop(frame);
+                }
+            });
+        }
+        for (Connection member : others) {
+            member.send(frame);
+        }
+    }
+
+    /**
+     * closes every member once it got what was already sent, members can't be added anymore
+     */
+    public void close() {
+        closed = true;
+        for (Set<NioPlayerSocket> members : loops.values()) {
+            for (NioPlayerSocket member : members) {
+                member.closeWhenSent();
+            }
+        }
+        for (Connection member : others) {
+            member.closeWhenSent();
+        }
+    }
+
+    public int size() {
+        int size = others.size();
+        for (Set<NioPlayerSocket> members : loops.values()) {
+            size += members.size();
+        }
+        return size;
+    }
+}
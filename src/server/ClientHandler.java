@@ -2,27 +2,105 @@ package server;
 
 import java.io.IOException;
 import java.net.Socket;
+import java.util.concurrent.Executor;
 
 public class ClientHandler {
-    MatchMaker matchMaker;
+    private static final String RESUMED_MESSAGE = "Reconnected. You are back in your match.";
+    private final Executor executor;
+    private final SlowConsumerPolicy policy;
+    private final SessionRegistry sessions;
+    private final Leaderboard leaderboard;
+    private final LiveGames liveGames;
+    Lobby lobby;
 
-    public ClientHandler(MatchMaker matchMaker) {
-        this.matchMaker = matchMaker;
-        matchMaker.start();
+    public ClientHandler(Lobby lobby, Executor executor, SlowConsumerPolicy policy, SessionRegistry sessions,
+                         Leaderboard leaderboard, LiveGames liveGames) {
+        this.lobby = lobby;
+        this.executor = executor;
+        this.policy = policy;
+        this.sessions = sessions;
+        this.leaderboard = leaderboard;
+        this.liveGames = liveGames;
     }
 
     /**
-     * wraps client socket with a Player object and adds to the match making queue
+     * wraps client socket with a Player object and adds to the match making queue.
+     * a client that only asked for the leaderboard already got it in the handshake and is disconnected.
      *
      * @param clientSocket represent the new connection request
      */
     public void handle(Socket clientSocket) {
         try {
-            Player player = new Player(clientSocket);
-            Logger.log("connected with " + player + " at " + clientSocket);
-            matchMaker.add(player);
+            PlayerSocket connection = new PlayerSocket(clientSocket, executor, policy, sessions, leaderboard);
+            if (connection.isQuery()) {
+                connection.close();
+                return;
+            }
+            connection.startReading();
+            handle(connection);
         } catch (IOException e) {
-            Logger.log("failed to connect with player at " + clientSocket);
+            Logger.warn("failed to connect with player at ", clientSocket);
+            try {
+                clientSocket.close();
+            } catch (IOException ignored) {
+                // the connection is being dropped anyway
+            }
+            Metrics.connectionClosed();
+        }
+    }
+
+    /**
+     * wraps a connection that already finished the name handshake with a Player object
+     * and adds to the match making queue. a connection that resumed a session gets its old
+     * Player back instead, and a spectator joins the game it asked to watch.
+     *
+     * @param connection represent the new connection
+     */
+    public void handle(Connection connection) {
+        if (connection.isSpectator()) {
+            spectate(connection);
+            return;
+        }
+        if (connection.isResumed()) {
+            resume(connection);
+            return;
+        }
+        Player player = new Player(connection);
+        player.setRating(ratingOf(player.getName()));
+        sessions.register(player, connection);
+        Logger.log("connected with " + player + " at " + connection);
+        lobby.add(player);
+    }
+
+    /**
+     * @return the Elo rating the name has on the leaderboard, so players who win about as often are matched
+     * together
+     */
+    private int ratingOf(String name) {
+        return leaderboard == null || name == null ? Player.DEFAULT_RATING : leaderboard.rating(name);
+    }
+
+    private void resume(Connection connection) {
+        Player player = sessions.resume(connection);
+        if (player == null) {
+            // the session was evicted or its match ended after the handshake accepted it
+            Logger.warn("session expired for ", connection);
+            connection.sendMessage("Your session expired.");
+            connection.closeWhenSent();
+            return;
+        }
+        connection.sendMessage(RESUMED_MESSAGE);
+    }
+
+    private void spectate(Connection connection) {
+        Game game = liveGames == null ? null : liveGames.get(connection.getSpectatedMatch());
+        if (game == null) {
+            connection.sendMessage("There is no such match to watch.");
+            connection.closeWhenSent();
+            return;
+        }
+        if (!game.addSpectator(connection)) {
+            connection.closeWhenSent();
         }
     }
 }
@@ -0,0 +1,85 @@
+package server;
+
+import protocol.Frame;
+import protocol.Packet;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * a connection with a client that already sent its name.
+ * the game only talks to players through this interface so it doesn't care
+ * whether the connection is a blocking socket or a non-blocking channel.
+ */
+public interface Connection {
+    /**
+     * the answer to a question the client didn't answer in time
+     */
+    int TIMED_OUT = -1;
+    /**
+     * the answer to a question that ended before it could time out, because the next question was sent or
+     * the connection closed
+     */
+    int NO_ANSWER = -2;
+
+    String getName();
+
+    /**
+     * @return name of the match queue the client asked to join in the name packet
+     */
+    String getQueue();
+
+    /**
+     * @return the session token given to the client in the response, or the token it resumed
+     */
+    String getToken();
+
+    /**
+     * @return true if the client sent a resume packet instead of a name packet
+     */
+    boolean isResumed();
+
+    /**
+     * @return true if the client sent a spectate packet, it only watches a match and never answers
+     */
+    boolean isSpectator();
+
+    /**
+     * @return id of the match a spectator asked to watch, -1 for the newest one
+     */
+    int getSpectatedMatch();
+
+    void setTimeOut(long timeout);
+
+    /**
+     * sends an already encoded packet to the client
+     *
+     * @param frame packet to be sent
+     */
+    void send(Frame frame);
+
+    default void sendMessage(String message) {
+        send(Frame.of(Packet.message(message)));
+    }
+
+    /**
+     * sends a question to the client without blocking the caller.
+     *
+     * @param question the question packet to be sent to client
+     * @return a future that completes with the answer sent by the client, TIMED_OUT if the request times out
+     *         or NO_ANSWER if it ends before that
+     */
+    CompletableFuture<Integer> sendQuestion(Frame question);
+
+    void close();
+
+    /**
+     * closes the connection once everything that is already queued for the client was written
+     */
+    void closeWhenSent();
+
+    /**
+     * @param listener gets called once when the connection is closed or lost. if that already happened,
+     *                 it's called right away
+     */
+    void onClose(Runnable listener);
+}
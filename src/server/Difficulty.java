@@ -0,0 +1,19 @@
+package server;
+
+public enum Difficulty {
+    EASY,
+    MEDIUM,
+    HARD;
+
+    /**
+     * @return the difficulty with that name in any case or null if there isn't one
+     */
+    public static Difficulty fromName(String name) {
+        for (Difficulty difficulty : values()) {
+            if (difficulty.name().equalsIgnoreCase(name)) {
+                return difficulty;
+            }
+        }
+        return null;
+    }
+}
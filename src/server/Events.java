@@ -0,0 +1,124 @@
+package server;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * custom Java Flight Recorder events. they cost almost nothing while no recording is running, and during a
+ * recording the match, player and question ids let JMC put together the timeline of a single match.
+ * stack traces are turned off because the events happen on the hot paths.
+ */
+final class Events {
+    private static final String CATEGORY = "Trivia Server";
+
+    private Events() {
+    }
+
+    @Name("server.Handshake")
+    @Label("Handshake")
+    @Description("from accepting the connection until the response to the name packet was sent")
+    @Category({CATEGORY, "Connection"})
+    @StackTrace(false)
+    static class Handshake extends Event {
+        @Label("Remote Address")
+        String address;
+        @Label("Player Name")
+        String name;
+        @Label("Protocol")
+        String protocol;
+        @Label("Successful")
+        boolean successful;
+    }
+
+    @Name("server.FrameWrite")
+    @Label("Frame Write")
+    @Description("from taking a frame out of the outbound queue until it was written to the socket")
+    @Category({CATEGORY, "Connection"})
+    @StackTrace(false)
+    static class FrameWrite extends Event {
+        @Label("Remote Address")
+        String address;
+        @Label("Packet Type")
+        String type;
+        @Label("Size")
+        @DataAmount
+        int size;
+    }
+
+    @Name("server.QueueWait")
+    @Label("Queue Wait")
+    @Description("time a player waited to be matched")
+    @Category({CATEGORY, "Match"})
+    @StackTrace(false)
+    static class QueueWait extends Event {
+        @Label("Player Id")
+        int playerId;
+        @Label("Queue")
+        String queue;
+    }
+
+    @Name("server.MatchFormed")
+    @Label("Match Formed")
+    @Description("creating a game for a formed match and adding its players")
+    @Category({CATEGORY, "Match"})
+    @StackTrace(false)
+    static class MatchFormed extends Event {
+        @Label("Match Id")
+        int matchId;
+        @Label("Player Ids")
+        String playerIds;
+    }
+
+    @Name("server.RoundPhase")
+    @Label("Round Phase")
+    @Description("a state of the game: waiting before a question, collecting answers or resolving the round")
+    @Category({CATEGORY, "Game"})
+    @StackTrace(false)
+    static class RoundPhase extends Event {
+        @Label("Match Id")
+        int matchId;
+        @Label("Round")
+        int round;
+        @Label("Phase")
+        String phase;
+        @Label("Question Id")
+        int questionId;
+    }
+
+    @Name("server.QuestionSent")
+    @Label("Question Sent")
+    @Description("handing a question to the connection of a player")
+    @Category({CATEGORY, "Game"})
+    @StackTrace(false)
+    static class QuestionSent extends Event {
+        @Label("Match Id")
+        int matchId;
+        @Label("Player Id")
+        int playerId;
+        @Label("Question Id")
+        int questionId;
+    }
+
+    @Name("server.AnswerReceived")
+    @Label("Answer Received")
+    @Description("from sending a question until the answer of the player arrived or timed out")
+    @Category({CATEGORY, "Game"})
+    @StackTrace(false)
+    static class AnswerReceived extends Event {
+        @Label("Match Id")
+        int matchId;
+        @Label("Player Id")
+        int playerId;
+        @Label("Question Id")
+        int questionId;
+        @Label("Answer")
+        int answer;
+        @Label("Timed Out")
+        boolean timedOut;
+    }
+}
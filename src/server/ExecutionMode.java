@@ -0,0 +1,51 @@
+package server;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * decides what kind of threads the server uses for connections. the Server and NioServer hand every new
+ * connection to the ClientHandler on this executor, and each PlayerSocket reads its answers and drains its
+ * outbound queue on it. games, timeouts and the answers of NioPlayerSockets run on the timer's small pool
+ * of platform threads instead, whatever the mode.
+ */
+public enum ExecutionMode {
+    /**
+     * platform threads from a cached pool. a connection still gets a thread of its own while it blocks, but
+     * short tasks like draining an outbound queue reuse idle threads instead of starting one each.
+     */
+    PLATFORM,
+    /**
+     * a new virtual thread for every task. blocking calls park the virtual thread
+     * instead of holding on to an OS thread, so thousands of waiting players are cheap.
+     */
+    VIRTUAL;
+
+    public static ExecutionMode fromArgs(String[] args) {
+        for (String arg : args) {
+            if (arg.equals("--virtual")) {
+                return VIRTUAL;
+            }
+        }
+        return PLATFORM;
+    }
+
+    public ThreadFactory newThreadFactory(String name) {
+        if (this == VIRTUAL) {
+            return Thread.ofVirtual().name(name + "-", 0).factory();
+        }
+        return Thread.ofPlatform().name(name + "-", 0).factory();
+    }
+
+    /**
+     * @return an executor that reuses idle platform threads, or one that starts a new virtual thread for
+     * every task because virtual threads are cheaper to start than to pool
+     */
+    public ExecutorService newExecutor(String name) {
+        if (this == VIRTUAL) {
+            return Executors.newThreadPerTaskExecutor(newThreadFactory(name));
+        }
+        return Executors.newCachedThreadPool(newThreadFactory(name));
+    }
+}
@@ -1,40 +1,107 @@
 package server;
 
+import protocol.Frame;
+import protocol.Packet;
+
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Timer;
-import java.util.TimerTask;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
-public class Game extends Thread {
+/**
+ * a match between a few players. a game doesn't own a thread, it moves between its states
+ * in short steps that run on the timing wheel shared by all games.
+ */
+public class Game {
     private static final int NUMBER_OF_QUESTIONS = 5;
     private static final int QUESTIONS_TIME = 30000; // milliseconds
     private static final int TIME_BETWEEN_QUESTIONS = 3000;
-    private static final int REFRESH_TIME = 100;
-    private static final int DELAY_BEFORE_START_LISTENING = 100;
-    private static final int QUEUE_CAPACITY = 100;
-    private static volatile int idCounter = 0;
+    private static final AtomicInteger idCounter = new AtomicInteger();
     private final Question[] questions;
     private final HashMap<Integer, Player> players;
-    private final BlockingQueue<Answer> answersQueue;
-    private final Timer timer;
+    private final TimingWheel timer;
+    private final AtomicReference<State> state;
+    private final long timeBetweenQuestions;
     private final int matchId;
-    private Question currentQuestion;
+    private final ResultsJournal journal;
+    private final Leaderboard leaderboard;
+    private final List<MatchResult.Round> rounds;
+    private final BroadcastGroup spectators;
+    private final CompletableFuture<Void> finished;
+    private int questionIndex;
+    private long roundStart;
+    private volatile Question currentQuestion;
+    private volatile AnswerCollector collector;
     private Answer winningAnswer;
+    private volatile TimingWheel.Timeout timeUpTask;
+    private volatile Events.RoundPhase phase;
+
+    /**
+     * CREATED -> WAITING -> COLLECTING -> RESOLVING -> WAITING ... -> FINISHED
+     */
+    private enum State {
+        CREATED,
+        WAITING, // waiting before sending the next question
+        COLLECTING, // question was sent and answers are coming in
+        RESOLVING, // finding the first correct answer and sending the result
+        FINISHED
+    }
+
+    /**
+     * @param questionsGenerator source of the game questions
+     * @param timer              shared timer that runs the steps of all games
+     */
+    public Game(QuestionsGenerator questionsGenerator, TimingWheel timer) {
+        this(questionsGenerator, timer, TIME_BETWEEN_QUESTIONS, null, null);
+    }
 
-    public Game(QuestionsGenerator questionsGenerator) {
+    /**
+     * @param questionsGenerator source of the game questions
+     * @param timer              shared timer that runs the steps of all games
+     * @param journal            where the result is written when the game ends
+     * @param leaderboard        gets the points of the players when the game ends
+     */
+    public Game(QuestionsGenerator questionsGenerator, TimingWheel timer, ResultsJournal journal,
+                Leaderboard leaderboard) {
+        this(questionsGenerator, timer, TIME_BETWEEN_QUESTIONS, journal, leaderboard);
+    }
+
+    /**
+     * @param questionsGenerator   source of the game questions
+     * @param timer                shared timer that runs the steps of all games
+     * @param timeBetweenQuestions pause before every question in milliseconds
+     */
+    public Game(QuestionsGenerator questionsGenerator, TimingWheel timer, long timeBetweenQuestions) {
+        this(questionsGenerator, timer, timeBetweenQuestions, null, null);
+    }
+
+    /**
+     * @param questionsGenerator   source of the game questions
+     * @param timer                shared timer that runs the steps of all games
+     * @param timeBetweenQuestions pause before every question in milliseconds
+     * @param journal              where the result is written when the game ends or null to not keep it
+     * @param leaderboard          gets the points of the players when the game ends or null to not keep them
+     */
+    public Game(QuestionsGenerator questionsGenerator, TimingWheel timer, long timeBetweenQuestions,
+                ResultsJournal journal, Leaderboard leaderboard) {
         questions = questionsGenerator.getRandomQuestionsSet(NUMBER_OF_QUESTIONS);
-        answersQueue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
         players = new HashMap<>();
-        timer = new Timer();
+        this.timer = timer;
+        this.timeBetweenQuestions = timeBetweenQuestions;
+        this.journal = journal;
+        this.leaderboard = leaderboard;
+        rounds = new ArrayList<>(NUMBER_OF_QUESTIONS);
+        spectators = new BroadcastGroup();
+        finished = new CompletableFuture<>();
+        state = new AtomicReference<>(State.CREATED);
         matchId = nextId();
     }
 
-    private synchronized int nextId() {
-        int id = idCounter;
-        idCounter += 1;
-        return id;
+    private static int nextId() {
+        // games and players are created by many threads at once
+        return idCounter.getAndIncrement();
     }
 
     public void addPlayer(Player player) {
@@ -43,138 +110,176 @@ public class Game extends Thread {
         Logger.log(player + " was added to " + this);
     }
 
+    /**
+     * lets a connection watch the rest of the game. it gets every question, round result and the final
+     * result, and it's closed when the game ends.
+     *
+     * @return false if the game already ended
+     */
+    public boolean addSpectator(Connection connection) {
+        connection.sendMessage("You are watching " + this + ".");
+        if (!spectators.add(connection)) {
+            connection.sendMessage(this + " is over.");
+            return false;
+        }
+        Logger.debug(this + " has a new spectator at ", connection);
+        return true;
+    }
+
+    /**
+     * @param listener gets called once when the game ends
+     */
+    public void onFinished(Runnable listener) {
+        finished.thenRun(listener);
+    }
+
+    public int getId() {
+        return matchId;
+    }
+
     @Override
     public String toString() {
         return "Game " + matchId;
     }
 
     /**
-     * main game method. it goes through these steps for each question:
+     * starts the game. it goes through these steps for each question:
      * 1- send question to players
-     * 2- sets a timer and waits until all players send an answer or for the timer to go up
-     * 3- goes through the answers and finds the first correct answer
+     * 2- sets a timer and waits until someone answers correctly, all players answer or the timer goes up
+     * 3- takes the first correct answer from the answers collector
      * 4- adds points to the player who got the correct answer first and sends the result to all players
-     * after the game ends, the final results are sent to all players
+     * after the game ends, the final results are sent to all players.
+     * this method returns right away, every step is scheduled on the shared timer.
      */
-    @Override
-    public void run() {
+    public void start() {
+        if (!state.compareAndSet(State.CREATED, State.WAITING)) {
+            return;
+        }
         Logger.log(this + " has started");
+        Metrics.gameStarted();
+        enterPhase(State.WAITING);
         notifyAllPlayers("You were added to a match.\nMatch is starting...");
-        for (Question question : questions) {
-            waitFor(TIME_BETWEEN_QUESTIONS);
-            askQuestion(question);
-            waitForAnswers();
-            findFirstToAnswer();
-            processResult();
-        }
-        findWinner();
+        timer.schedule(this::nextQuestion, timeBetweenQuestions);
     }
 
-    private void waitFor(long time) {
-        try {
-            Thread.sleep(time);
-        } catch (InterruptedException e) {
-            Logger.log("sleep interrupted at " + this);
+    /**
+     * asks the next question or ends the game if there are no more questions
+     */
+    private void nextQuestion() {
+        if (questionIndex == questions.length) {
+            state.set(State.FINISHED);
+            enterPhase(State.FINISHED);
+            findWinner();
+            spectators.close();
+            finished.complete(null);
+            Metrics.gameFinished();
+            return;
         }
+        Question question = questions[questionIndex];
+        questionIndex += 1;
+        askQuestion(question);
     }
 
     /**
-     * sends question to all players each in a separate thread
+     * sends question to all players without waiting for their answers. the round ends when the answers
+     * collector decides the outcome or when the timer goes up, whichever comes first.
      *
      * @param question question to broadcast
      */
     private void askQuestion(Question question) {
-        answersQueue.clear();
         currentQuestion = question;
+        AnswerCollector roundCollector = new AnswerCollector(question, players.size(), this::endRound);
+        collector = roundCollector;
+        timeUpTask = timer.schedule(this::endRound, QUESTIONS_TIME);
+        roundStart = System.nanoTime();
+        enterPhase(State.COLLECTING);
+        state.set(State.COLLECTING);
+        // the question goes to every player before any answer is recorded, otherwise a quick correct
+        // answer could end the round before the last players were even asked
+        List<CompletableFuture<Answer>> answers = new ArrayList<>(players.size());
+        List<Events.AnswerReceived> answerEvents = new ArrayList<>(players.size());
         for (Player player : players.values()) {
-            new Thread(() -> askQuestionToPlayer(player)).start();
+            Events.QuestionSent sent = new Events.QuestionSent();
+            Events.AnswerReceived received = new Events.AnswerReceived();
+            sent.begin();
+            received.begin();
+            answers.add(player.sendQuestion(question));
+            sent.end();
+            if (sent.shouldCommit()) {
+                sent.matchId = matchId;
+                sent.playerId = player.getId();
+                sent.questionId = question.getId();
+                sent.commit();
+            }
+            answerEvents.add(received);
+        }
+        spectators.send(question.getMessageFrame());
+        for (int slot = 0; slot < answers.size(); slot++) {
+            int playerSlot = slot;
+            Events.AnswerReceived received = answerEvents.get(slot);
+            answers.get(slot).thenAccept(answer -> {
+                commitAnswer(received, answer);
+                roundCollector.record(playerSlot, answer);
+            });
         }
     }
 
-    /**
-     * sends the current question to a player and wait for an answer
-     *
-     * @param player player to be asked
-     */
-    private void askQuestionToPlayer(Player player) {
-        Answer answer = player.sendQuestion(currentQuestion);
-        try {
-            answersQueue.put(answer);
-        } catch (InterruptedException e) {
-            Logger.log("queue operation interrupted at " + this);
+    private void commitAnswer(Events.AnswerReceived event, Answer answer) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.matchId = matchId;
+            event.playerId = answer.getPlayerID();
+            event.questionId = answer.getQuestionId();
+            event.answer = answer.getAnswerNumber();
+            event.timedOut = answer.getAnswerNumber() == Connection.TIMED_OUT;
+            event.commit();
         }
     }
 
     /**
-     * waits until either all players send an answer or the timer goes up
+     * ends the flight recorder event of the current phase and starts one for the next phase
      */
-    private void waitForAnswers() {
-        TimerTask timeUpTask = new TimerTask() {
-            @Override
-            public void run() {
-                timeUpCallback();
-            }
-        };
-        TimerTask checkAnswersTask = new TimerTask() {
-            @Override
-            public void run() {
-                checkIfAllPlayersAnswered();
-            }
-        };
-
-        timer.schedule(timeUpTask, QUESTIONS_TIME);
-        timer.schedule(checkAnswersTask, DELAY_BEFORE_START_LISTENING, REFRESH_TIME);
-
-        synchronized (this) {
-            try {
-                wait();
-            } catch (InterruptedException e) {
-                Logger.log("wait interrupted at " + this);
-            }
+    private void enterPhase(State next) {
+        Events.RoundPhase ended = phase;
+        if (ended != null) {
+            ended.commit();
         }
-
-        timeUpTask.cancel();
-        checkAnswersTask.cancel();
-    }
-
-    private void checkIfAllPlayersAnswered() {
-        if (answersQueue.size() == players.size()) {
-            synchronized (this) {
-                notify();
-            }
+        if (next == State.FINISHED) {
+            phase = null;
+            return;
+        }
+        Events.RoundPhase started = new Events.RoundPhase();
+        started.matchId = matchId;
+        started.phase = next.name();
+        if (next == State.WAITING) {
+            started.round = questionIndex + 1;
+            started.questionId = -1; // the question isn't picked yet
+        } else {
+            started.round = questionIndex;
+            started.questionId = currentQuestion.getId();
         }
+        started.begin();
+        phase = started;
     }
 
     /**
-     * gets called when timer goes up
+     * gets called when the timer goes up or the outcome of the round is decided. only the first call ends the round.
      */
-    private void timeUpCallback() {
-        synchronized (this) {
-            notify();
+    private void endRound() {
+        if (!state.compareAndSet(State.COLLECTING, State.RESOLVING)) {
+            return;
         }
-    }
-
-    private void findFirstToAnswer() {
-        winningAnswer = null;
-        while (!answersQueue.isEmpty()) {
-            try {
-                Answer attempt = answersQueue.take();
-                if (checkAnswer(attempt)) {
-                    winningAnswer = attempt;
-                    break;
-                }
-            } catch (InterruptedException e) {
-                Logger.log("queue operation interrupted at " + this);
-            }
-        }
-    }
-
-    private boolean checkAnswer(Answer answer) {
-        if (answer.getQuestionId() == currentQuestion.getId()) {
-            return answer.getAnswerNumber() == currentQuestion.getCorrectAnswer();
-        } else {
-            return false;
+        timeUpTask.cancel();
+        Metrics.roundEnded(System.nanoTime() - roundStart);
+        enterPhase(State.RESOLVING);
+        winningAnswer = collector.getFirstCorrect();
+        processResult();
+        if (journal != null) {
+            rounds.add(roundResult());
         }
+        enterPhase(State.WAITING);
+        state.set(State.WAITING);
+        timer.schedule(this::nextQuestion, timeBetweenQuestions);
     }
 
     /**
@@ -218,12 +323,82 @@ public class Game extends Thread {
             Player winner = winners.get(0);
             notifyAllPlayers(winner.getName() + " wins!");
         }
+        for (Player player : players.values()) {
+            player.finish();
+        }
+        if (journal != null && !journal.append(matchResult())) {
+            Logger.warn("results journal is full, dropped the result of " + this);
+        }
+        if (leaderboard != null) {
+            updateLeaderboard();
+        }
         Logger.log(this + " ended");
     }
 
+    /**
+     * adds the points of every player to the leaderboard and moves their ratings, then tells each player
+     * its new rank
+     */
+    private void updateLeaderboard() {
+        String[] names = new String[players.size()];
+        int[] points = new int[players.size()];
+        int i = 0;
+        for (Player player : players.values()) {
+            names[i] = player.getName();
+            points[i] = player.getPoints();
+            i++;
+        }
+        leaderboard.addMatch(names, points);
+        for (Player player : players.values()) {
+            player.sendMessage(leaderboard.describeRank(player.getName()));
+        }
+    }
+
+    /**
+     * the latencies are in the order of the answer slots, which is the order of the players
+     */
+    private MatchResult.Round roundResult() {
+        long[] latencies = new long[players.size()];
+        for (int slot = 0; slot < latencies.length; slot++) {
+            Answer answer = collector.getAnswer(slot);
+            boolean answered = answer != null && answer.getAnswerNumber() != Connection.TIMED_OUT
+                    && answer.getAnswerNumber() != Connection.NO_ANSWER;
+            latencies[slot] = answered ? answer.getLatency() / 1000 : -1;
+        }
+        int winner = -1;
+        if (winningAnswer != null) {
+            int slot = 0;
+            for (Player player : players.values()) {
+                if (player.getId() == winningAnswer.getPlayerID()) {
+                    winner = slot;
+                }
+                slot++;
+            }
+        }
+        return new MatchResult.Round(currentQuestion.getKey(), winner, latencies);
+    }
+
+    private MatchResult matchResult() {
+        String[] names = new String[players.size()];
+        int[] points = new int[players.size()];
+        int i = 0;
+        for (Player player : players.values()) {
+            names[i] = player.getName();
+            points[i] = player.getPoints();
+            i++;
+        }
+        return new MatchResult(journal.matchId(matchId), System.currentTimeMillis(), names, points,
+                rounds.toArray(new MatchResult.Round[0]));
+    }
+
+    /**
+     * encodes the message once and sends the same bytes to every player and spectator
+     */
     private void notifyAllPlayers(String message) {
+        Frame frame = Frame.of(Packet.message(message));
         for (Player player : players.values()) {
-            player.sendMessage(message);
+            player.send(frame);
         }
+        spectators.send(frame);
     }
 }
@@ -0,0 +1,144 @@
+package server;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * a histogram that many threads can record into without locking. values are counted in buckets that
+ * split every power of two into four, so a percentile is never more than 25% above the real value.
+ * recording only touches a few LongAdders.
+ */
+public class Histogram {
+    private static final int SUB_BITS = 2;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int BUCKETS_COUNT = (64 - SUB_BITS) * SUB_COUNT;
+    private final LongAdder[] buckets;
+    private final LongAdder count;
+    private final LongAdder sum;
+    private final LongAccumulator max;
+
+    public Histogram() {
+        buckets = new LongAdder[BUCKETS_COUNT];
+        for (int i = 0; i < BUCKETS_COUNT; i++) {
+            buckets[i] = new LongAdder();
+        }
+        count = new LongAdder();
+        sum = new LongAdder();
+        max = new LongAccumulator(Long::max, 0);
+    }
+
+    /**
+     * @param value value to add. negative values are counted as 0
+     */
+    public void record(long value) {
+        value = Math.max(0, value);
+        buckets[indexOf(value)].increment();
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_COUNT) {
+            return (int) value;
+        }
+        int msb = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (msb - SUB_BITS)) & (SUB_COUNT - 1);
+        return (msb - SUB_BITS + 1) * SUB_COUNT + sub;
+    }
+
+    /**
+     * @return the largest value that falls in the bucket
+     */
+    static long upperBoundOf(int index) {
+        if (index < SUB_COUNT) {
+            return index;
+        }
+        int msb = index / SUB_COUNT + SUB_BITS - 1;
+        long lower = (long) (SUB_COUNT + index % SUB_COUNT) << (msb - SUB_BITS);
+        return lower + (1L << (msb - SUB_BITS)) - 1;
+    }
+
+    /**
+     * copies the histogram. recordings that happen while copying may be only partly included.
+     */
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKETS_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKETS_COUNT; i++) {
+            counts[i] = buckets[i].sum();
+            total += counts[i];
+        }
+        long maxValue = max.get();
+        return new Snapshot(total, total == 0 ? 0 : sum.sum() / total,
+                percentile(counts, total, 0.5, maxValue), percentile(counts, total, 0.9, maxValue),
+                percentile(counts, total, 0.99, maxValue), maxValue);
+    }
+
+    private static long percentile(long[] counts, long total, double fraction, long maxValue) {
+        long rank = (long) Math.ceil(total * fraction);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank && seen > 0) {
+                return Math.min(upperBoundOf(i), maxValue);
+            }
+        }
+        return 0;
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * the state of a histogram at some point. it's an MXBean composite type so its getters show up as
+     * the items of the attribute.
+     */
+    public static class Snapshot {
+        private final long count;
+        private final long mean;
+        private final long p50;
+        private final long p90;
+        private final long p99;
+        private final long max;
+
+        public Snapshot(long count, long mean, long p50, long p90, long p99, long max) {
+            this.count = count;
+            this.mean = mean;
+            this.p50 = p50;
+            this.p90 = p90;
+            this.p99 = p99;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getMean() {
+            return mean;
+        }
+
+        public long getP50() {
+            return p50;
+        }
+
+        public long getP90() {
+            return p90;
+        }
+
+        public long getP99() {
+            return p99;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return "n=" + count + " mean=" + mean + " p50=" + p50 + " p90=" + p90 + " p99=" + p99 + " max=" + max;
+        }
+    }
+}
@@ -0,0 +1,325 @@
+package server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * the points of every player name over all its matches. there is no global lock: an update only locks the
+ * name it changes, while the entries are kept sorted in a concurrent skip list for the top players and
+ * counted per score in a Fenwick tree of atomic counters for the rank of anyone.
+ * <p>
+ * scores from SCORE_CAP up share the last counter of the tree, so the rank of a player up there is counted
+ * on the skip list instead, which only walks the few players above it.
+ * <p>
+ * every name also has an Elo rating that moves with the results of its matches, not with how many it
+ * played. the SkillMatchMaker matches players by it.
+ */
+public class Leaderboard {
+    public static final int DEFAULT_TOP = 10;
+    public static final int MAX_TOP = 100;
+    static final int SCORE_CAP = 1 << 18;
+    private static final int MAGIC = 0x4C425244; // "LBRD"
+    private static final int VERSION = 2; // 1 had no ratings
+    private static final int RATING_K = 32; // most a rating moves in one match
+    private final Map<String, Entry> scores;
+    private final ConcurrentSkipListSet<Entry> ranking;
+    private final AtomicLongArray counts; // Fenwick tree, index score + 1
+    private final LongAdder updates;
+    private long savedUpdates; // guarded by this
+
+    public Leaderboard() {
+        scores = new ConcurrentHashMap<>();
+        ranking = new ConcurrentSkipListSet<>();
+        counts = new AtomicLongArray(SCORE_CAP + 2);
+        updates = new LongAdder();
+    }
+
+    /**
+     * a name with its score and rating. entries are immutable, an update replaces the entry of the name.
+     * higher scores come first and equal scores are ordered by name.
+     */
+    public record Entry(String name, long score, int rating) implements Comparable<Entry> {
+        @Override
+        public int compareTo(Entry other) {
+            int byScore = Long.compare(other.score, score);
+            return byScore != 0 ? byScore : name.compareTo(other.name);
+        }
+    }
+
+    /**
+     * adds the points of a finished match to a name
+     *
+     * @return the new score of the name
+     * @throws IllegalArgumentException if points is negative, a score can only go up
+     */
+    public long add(String name, int points) {
+        checkPoints(points);
+        return add(name, points, 0);
+    }
+
+    /**
+     * adds the points of a finished match to a name and moves its rating
+     *
+     * @return the new score of the name
+     */
+    private long add(String name, int points, int ratingChange) {
+        Entry updated = scores.compute(name, (key, old) -> {
+            Entry entry = old == null
+                    ? new Entry(key, points, Player.DEFAULT_RATING + ratingChange)
+                    : new Entry(key, old.score + points, old.rating + ratingChange);
+            // the new entry is in the ranking before the old one leaves so a reader never misses the name
+            ranking.add(entry);
+            if (old != null) {
+                ranking.remove(old);
+                count(old.score, -1);
+            }
+            count(entry.score, 1);
+            return entry;
+        });
+        updates.increment();
+        return updated.score;
+    }
+
+    /**
+     * adds the points of a finished match to every player and moves their ratings with the Elo formula.
+     * every player plays every other one: more points is a win and the same points a draw. a name without
+     * matches has DEFAULT_RATING.
+     *
+     * @param names  names of the players
+     * @param points points of the players in the match, in the same order
+     * @throws IllegalArgumentException if any points are negative, then no score changes
+     */
+    public void addMatch(String[] names, int[] points) {
+        for (int playerPoints : points) {
+            checkPoints(playerPoints);
+        }
+        int[] ratings = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+            ratings[i] = rating(names[i]);
+        }
+        for (int i = 0; i < names.length; i++) {
+            double change = 0;
+            for (int j = 0; j < names.length; j++) {
+                if (j == i) {
+                    continue;
+                }
+                double expected = 1 / (1 + Math.pow(10, (ratings[j] - ratings[i]) / 400.0));
+                double actual = points[i] > points[j] ? 1 : points[i] == points[j] ? 0.5 : 0;
+                change += RATING_K * (actual - expected) / (names.length - 1);
+            }
+            add(names[i], points[i], (int) Math.round(change));
+        }
+    }
+
+    /**
+     * the counters are indexed by score, a negative score has no counter
+     */
+    private static void checkPoints(int points) {
+        if (points < 0) {
+            throw new IllegalArgumentException("negative points: " + points);
+        }
+    }
+
+    /**
+     * @return the rating of the name or DEFAULT_RATING if it didn't play yet
+     */
+    public int rating(String name) {
+        Entry entry = scores.get(name);
+        return entry == null ? Player.DEFAULT_RATING : entry.rating;
+    }
+
+    /**
+     * @return the best players in order, at most count of them
+     */
+    public List<Entry> top(int count) {
+        List<Entry> top = new ArrayList<>(count);
+        Set<String> names = new HashSet<>();
+        for (Entry entry : ranking) {
+            if (top.size() == count) {
+                break;
+            }
+            // a name that is being updated can be in the ranking twice for a moment
+            if (names.add(entry.name)) {
+                top.add(entry);
+            }
+        }
+        return top;
+    }
+
+    /**
+     * @return the entry of the name or null if it has no score
+     */
+    public Entry get(String name) {
+        return scores.get(name);
+    }
+
+    /**
+     * @return 1 plus the number of names with a higher score than this one, or -1 if it has no score.
+     * names with the same score share a rank.
+     */
+    public long rank(String name) {
+        Entry entry = scores.get(name);
+        return entry == null ? -1 : rankOf(entry.score);
+    }
+
+    private long rankOf(long score) {
+        if (score < SCORE_CAP) {
+            return 1 + prefix(SCORE_CAP + 1) - prefix((int) score + 1);
+        }
+        long above = 0;
+        for (Entry entry : ranking) {
+            if (entry.score <= score) {
+                break;
+            }
+            above++;
+        }
+        return 1 + above;
+    }
+
+    public int size() {
+        return scores.size();
+    }
+
+    /**
+     * @return the top of the leaderboard as a message, with the rank of the name after it if it isn't null
+     */
+    public String describe(int count, String name) {
+        count = count <= 0 ? DEFAULT_TOP : Math.min(count, MAX_TOP);
+        StringBuilder message = new StringBuilder("Top ").append(count).append(" of ").append(size()).append(':');
+        long rank = 0;
+        long lastScore = -1;
+        int position = 0;
+        for (Entry entry : top(count)) {
+            position++;
+            if (entry.score != lastScore) {
+                rank = position;
+                lastScore = entry.score;
+            }
+            message.append('\n').append(rank).append(". ").append(entry.name).append(' ').append(entry.score);
+        }
+        if (name != null && !name.isEmpty()) {
+            message.append('\n').append(describeRank(name));
+        }
+        return message.toString();
+    }
+
+    /**
+     * @return the rank of a name as a message
+     */
+    public String describeRank(String name) {
+        Entry entry = scores.get(name);
+        if (entry == null) {
+            return name + " has no points yet.";
+        }
+        return name + " is ranked " + rankOf(entry.score) + " of " + size() + " with " + entry.score
+                + " points and a rating of " + entry.rating + ".";
+    }
+
+    /**
+     * adds delta to the number of names with the score
+     */
+    private void count(long score, int delta) {
+        for (int i = (int) Math.min(score, SCORE_CAP) + 1; i < counts.length(); i += i & -i) {
+            counts.addAndGet(i, delta);
+        }
+    }
+
+    /**
+     * @return number of names whose score is below index, scores from SCORE_CAP up are counted at SCORE_CAP
+     */
+    private long prefix(int index) {
+        long sum = 0;
+        for (int i = index; i > 0; i -= i & -i) {
+            sum += counts.get(i);
+        }
+        return sum;
+    }
+
+    /**
+     * writes every name and score to a new file that replaces the old snapshot in one move, so the old one
+     * stays whole if the server stops while writing. does nothing if there were no updates since the last
+     * snapshot.
+     */
+    public synchronized void snapshot(Path path) throws IOException {
+        long updateCount = updates.sum();
+        if (updateCount == savedUpdates && Files.exists(path)) {
+            return;
+        }
+        List<Entry> entries = new ArrayList<>(scores.values());
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(entries.size());
+            for (Entry entry : entries) {
+                out.writeUTF(entry.name);
+                out.writeLong(entry.score);
+                out.writeInt(entry.rating);
+            }
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        savedUpdates = updateCount;
+        Logger.debug("saved " + entries.size() + " leaderboard entries to " + path);
+    }
+
+    /**
+     * @return the leaderboard of the snapshot or an empty one if there is no snapshot yet
+     */
+    public static Leaderboard load(Path path) throws IOException {
+        Leaderboard leaderboard = new Leaderboard();
+        if (!Files.exists(path)) {
+            return leaderboard;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            int version;
+            if (in.readInt() != MAGIC || (version = in.readInt()) < 1 || version > VERSION) {
+                throw new IOException("not a leaderboard snapshot: " + path);
+            }
+            int size = in.readInt();
+            for (int i = 0; i < size; i++) {
+                String name = in.readUTF();
+                long score = in.readLong();
+                if (score < 0) {
+                    throw new IOException("negative score for " + name + " in " + path);
+                }
+                int rating = version == 1 ? Player.DEFAULT_RATING : in.readInt();
+                Entry entry = new Entry(name, score, rating);
+                leaderboard.scores.put(name, entry);
+                leaderboard.ranking.add(entry);
+                leaderboard.count(score, 1);
+            }
+        }
+        Logger.log("loaded " + leaderboard.size() + " leaderboard entries from " + path);
+        return leaderboard;
+    }
+
+    /**
+     * saves a snapshot every period, a failed snapshot is logged and tried again next time
+     *
+     * @param period milliseconds between snapshots
+     */
+    public TimingWheel.Timeout snapshotEvery(TimingWheel timer, Path path, long period) {
+        return timer.scheduleAtFixedRate(() -> {
+            try {
+                snapshot(path);
+            } catch (IOException e) {
+                Logger.warn("failed to save the leaderboard to " + path);
+            }
+        }, period, period);
+    }
+}
@@ -0,0 +1,39 @@
+package server;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * the games that are still running, by match id, so spectators can find the game they want to watch
+ */
+public class LiveGames {
+    private final ConcurrentSkipListMap<Integer, Game> games;
+
+    public LiveGames() {
+        games = new ConcurrentSkipListMap<>();
+    }
+
+    /**
+     * keeps the game until it ends
+     */
+    public void add(Game game) {
+        games.put(game.getId(), game);
+        game.onFinished(() -> games.remove(game.getId(), game));
+    }
+
+    /**
+     * @param matchId id of the match or -1 for the newest one
+     * @return the game or null if it isn't running
+     */
+    public Game get(int matchId) {
+        if (matchId < 0) {
+            Map.Entry<Integer, Game> newest = games.lastEntry();
+            return newest == null ? null : newest.getValue();
+        }
+        return games.get(matchId);
+    }
+
+    public int size() {
+        return games.size();
+    }
+}
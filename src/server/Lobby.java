@@ -0,0 +1,13 @@
+package server;
+
+/**
+ * where the ClientHandler sends players after they connect to be matched with other players
+ */
+public interface Lobby {
+    /**
+     * adds player to a waiting list to be matched with other players
+     *
+     * @param player player to be added to the waiting list
+     */
+    void add(Player player);
+}
@@ -1,12 +1,297 @@
 package server;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 
+/**
+ * asynchronous logger. callers only copy their message into a slot of a ring buffer, and a background
+ * writer thread formats the records and writes them in batches to the console and to a rolling log file.
+ * if the ring buffer is full, records are dropped instead of making the caller wait.
+ * <p>
+ * configured with system properties:
+ * logger.level (DEBUG, INFO, WARN or ERROR, default INFO),
+ * logger.file (default logs/server.log, empty to disable) and
+ * logger.console (default true).
+ */
 public class Logger {
+    private static final int CAPACITY = 8192; // must be a power of two
+    private static final int MASK = CAPACITY - 1;
+    private static final long MAX_FILE_SIZE = 10 * 1024 * 1024;
+    private static final int MAX_FILES = 5;
+    private static final long IDLE_WAIT = 100_000_000; // nanoseconds
+    private static final DateTimeFormatter SECONDS_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+    private static final Level level = Level.valueOf(System.getProperty("logger.level", "INFO").toUpperCase());
+    private static final Record[] ring = new Record[CAPACITY];
+    private static final AtomicLong head = new AtomicLong();
+    private static final LongAdder dropped = new LongAdder();
+    private static volatile long tail;
+    private static volatile boolean writerSleeping;
+    private static final Writer writer;
+
+    public enum Level {
+        DEBUG, INFO, WARN, ERROR
+    }
+
+    static {
+        for (int i = 0; i < CAPACITY; i++) {
+            ring[i] = new Record();
+        }
+        writer = new Writer(System.getProperty("logger.file", "logs/server.log"),
+                Boolean.parseBoolean(System.getProperty("logger.console", "true")));
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(writer::drainAndStop));
+    }
+
+    /**
+     * a slot of the ring buffer. slots are reused so logging doesn't allocate records.
+     */
+    private static class Record {
+        private volatile long sequence = -1; // sequence of the record stored in the slot once it's complete
+        private long time;
+        private Level level;
+        private String message;
+        private Object subject;
+    }
+
+    public static boolean isEnabled(Level level) {
+        return level.compareTo(Logger.level) >= 0;
+    }
+
     public static void log(String message) {
-        LocalDateTime now = java.time.LocalDateTime.now();
-        System.out.print("[" + DateTimeFormatter.ISO_DATE_TIME.format(now) + "] ");
-        System.out.println(message);
+        log(Level.INFO, message, null);
+    }
+
+    public static void debug(String message) {
+        log(Level.DEBUG, message, null);
+    }
+
+    /**
+     * logs a debug message about a subject. the subject is only turned into a string by the writer thread,
+     * and nothing happens at all if debug logging is off.
+     */
+    public static void debug(String message, Object subject) {
+        log(Level.DEBUG, message, subject);
+    }
+
+    public static void warn(String message) {
+        log(Level.WARN, message, null);
+    }
+
+    public static void warn(String message, Object subject) {
+        log(Level.WARN, message, subject);
+    }
+
+    public static void error(String message) {
+        log(Level.ERROR, message, null);
+    }
+
+    /**
+     * @return number of records dropped because the ring buffer was full
+     */
+    public static long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    private static void log(Level level, String message, Object subject) {
+        if (!isEnabled(level)) {
+            return;
+        }
+        long sequence;
+        do {
+            sequence = head.get();
+            if (sequence - tail >= CAPACITY) {
+                dropped.increment();
+                return;
+            }
+        } while (!head.compareAndSet(sequence, sequence + 1));
+
+        Record record = ring[(int) sequence & MASK];
+        record.time = System.currentTimeMillis();
+        record.level = level;
+        record.message = message;
+        record.subject = subject;
+        record.sequence = sequence;
+        if (writerSleeping) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    /**
+     * takes records out of the ring buffer and writes them in batches
+     */
+    private static class Writer extends Thread {
+        private final Path file;
+        private final PrintStream console;
+        private final StringBuilder batch;
+        private OutputStream fileOutput;
+        private long fileSize;
+        private long cachedSecond = -1;
+        private String cachedSecondText;
+        private volatile boolean stopped;
+
+        private Writer(String file, boolean console) {
+            super("logger");
+            setDaemon(true);
+            this.file = file.isEmpty() ? null : Paths.get(file);
+            this.console = console ? System.out : null;
+            batch = new StringBuilder(64 * 1024);
+        }
+
+        @Override
+        public void run() {
+            openFile();
+            while (!stopped) {
+                if (!writeBatch()) {
+                    writerSleeping = true;
+                    if (!hasRecord()) {
+                        LockSupport.parkNanos(this, IDLE_WAIT);
+                    }
+                    writerSleeping = false;
+                }
+            }
+        }
+
+        private boolean hasRecord() {
+            long next = tail;
+            return ring[(int) next & MASK].sequence == next;
+        }
+
+        /**
+         * @return false if there was nothing to write
+         */
+        private synchronized boolean writeBatch() {
+            long next = tail;
+            while (batch.length() < 60 * 1024) {
+                Record record = ring[(int) next & MASK];
+                if (record.sequence != next) {
+                    break;
+                }
+                format(record);
+                record.message = null;
+                record.subject = null;
+                next += 1;
+                tail = next;
+            }
+            long droppedCount = dropped.sumThenReset();
+            if (droppedCount > 0) {
+                batch.append("[logger] dropped ").append(droppedCount).append(" records\n");
+            }
+            if (batch.length() == 0) {
+                return false;
+            }
+            flush();
+            return true;
+        }
+
+        private void format(Record record) {
+            batch.append('[');
+            appendTime(record.time);
+            batch.append("] ");
+            if (record.level != Level.INFO) {
+                batch.append(record.level).append(' ');
+            }
+            batch.append(record.message);
+            if (record.subject != null) {
+                batch.append(record.subject);
+            }
+            batch.append('\n');
+        }
+
+        /**
+         * formats the date and time once every second and only appends the milliseconds for every record
+         */
+        private void appendTime(long time) {
+            long second = time / 1000;
+            if (second != cachedSecond) {
+                cachedSecond = second;
+                LocalDateTime dateTime = LocalDateTime.ofInstant(Instant.ofEpochSecond(second), ZoneId.systemDefault());
+                cachedSecondText = SECONDS_FORMAT.format(dateTime);
+            }
+            int millis = (int) (time % 1000);
+            batch.append(cachedSecondText).append('.');
+            if (millis < 100) {
+                batch.append('0');
+            }
+            if (millis < 10) {
+                batch.append('0');
+            }
+            batch.append(millis);
+        }
+
+        private void flush() {
+            String text = batch.toString();
+            batch.setLength(0);
+            if (console != null) {
+                console.print(text);
+                console.flush();
+            }
+            if (fileOutput != null) {
+                byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+                try {
+                    fileOutput.write(bytes);
+                    fileOutput.flush();
+                    fileSize += bytes.length;
+                    if (fileSize >= MAX_FILE_SIZE) {
+                        roll();
+                    }
+                } catch (IOException e) {
+                    System.err.println("logger failed to write to " + file);
+                    fileOutput = null;
+                }
+            }
+        }
+
+        private void openFile() {
+            if (file == null) {
+                return;
+            }
+            try {
+                if (file.getParent() != null) {
+                    Files.createDirectories(file.getParent());
+                }
+                fileOutput = Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                fileSize = Files.size(file);
+            } catch (IOException e) {
+                System.err.println("logger couldn't open " + file);
+            }
+        }
+
+        /**
+         * renames server.log to server.log.1, server.log.1 to server.log.2 and so on, and starts a new file
+         */
+        private void roll() throws IOException {
+            fileOutput.close();
+            for (int i = MAX_FILES - 1; i > 0; i--) {
+                Path older = Paths.get(file + "." + i);
+                if (Files.exists(older)) {
+                    Files.move(older, Paths.get(file + "." + (i + 1)), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            Files.move(file, Paths.get(file + ".1"), StandardCopyOption.REPLACE_EXISTING);
+            fileOutput = Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            fileSize = 0;
+        }
+
+        private void drainAndStop() {
+            stopped = true;
+            LockSupport.unpark(this);
+            while (writeBatch()) {
+                // keep writing until the ring buffer is empty
+            }
+        }
     }
 }
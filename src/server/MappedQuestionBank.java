@@ -0,0 +1,209 @@
+package server;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * a compiled question bank that is memory mapped instead of loaded. opening it only reads the header and
+ * the facets table, and a question is decoded from the file the first time it's asked for, so startup time
+ * and heap use don't grow with the size of the bank. decoded questions are kept in a small cache.
+ * <p>
+ * the file is big-endian: a header (magic, version, questions count, facets offset as a long), an index with
+ * the offset of every question as a long, the questions, then the facets. a question is its points, correct
+ * answer, difficulty and choices count as ints, then the category, the question and each choice as an int
+ * length followed by UTF-8 bytes. the facets are their count, then for every facet its key as a string,
+ * the number of positions and the positions as ints.
+ */
+public class MappedQuestionBank implements QuestionBank {
+    private static final int MAGIC = 0x51424E4B; // "QBNK"
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 20;
+    private static final int CACHE_SIZE = 4096; // questions, a power of 2
+    private static final Difficulty[] DIFFICULTIES = Difficulty.values();
+    private final MappedByteBuffer buffer;
+    private final int size;
+    private final Map<String, IntBuffer> facets;
+    private final AtomicReferenceArray<Entry> cache;
+
+    private MappedQuestionBank(MappedByteBuffer buffer, int size, Map<String, IntBuffer> facets) {
+        this.buffer = buffer;
+        this.size = size;
+        this.facets = facets;
+        cache = new AtomicReferenceArray<>(CACHE_SIZE);
+    }
+
+    /**
+     * maps a bank made by write()
+     *
+     * @throws IOException if the file can't be mapped or isn't a question bank
+     */
+    public static MappedQuestionBank open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("question bank is bigger than 2 GB");
+            }
+            if (channel.size() < HEADER_SIZE) {
+                throw new IOException("not a question bank");
+            }
+            // the mapping stays valid after the channel is closed
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                throw new IOException("not a question bank of version " + VERSION);
+            }
+            int size = buffer.getInt(8);
+            long facetsOffset = buffer.getLong(12);
+            if (size < 0 || HEADER_SIZE + 8L * size > facetsOffset || facetsOffset + 4 > buffer.capacity()) {
+                throw new IOException("question bank is truncated");
+            }
+            try {
+                return new MappedQuestionBank(buffer, size, readFacets(buffer, (int) facetsOffset));
+            } catch (IndexOutOfBoundsException e) {
+                throw new IOException("question bank is truncated");
+            }
+        }
+    }
+
+    /**
+     * reads the facets table. the positions stay in the file, every facet is a view of the mapping.
+     */
+    private static Map<String, IntBuffer> readFacets(MappedByteBuffer buffer, int position) {
+        int count = buffer.getInt(position);
+        position += 4;
+        Map<String, IntBuffer> facets = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            String key = readString(buffer, position);
+            position += 4 + buffer.getInt(position);
+            int length = buffer.getInt(position);
+            facets.put(key, buffer.slice(position + 4, 4 * length).asIntBuffer());
+            position += 4 + 4 * length;
+        }
+        return facets;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Question get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        int slot = index & (CACHE_SIZE - 1);
+        Entry entry = cache.get(slot);
+        if (entry == null || entry.index != index) {
+            // two threads may decode the same question, the cache keeps whichever comes last
+            entry = new Entry(index, decode((int) buffer.getLong(HEADER_SIZE + 8 * index)));
+            cache.set(slot, entry);
+        }
+        return entry.question;
+    }
+
+    @Override
+    public IntBuffer getFacet(String category, Difficulty difficulty) {
+        return facets.get(QuestionBank.facetKey(category, difficulty));
+    }
+
+    private Question decode(int position) {
+        int points = buffer.getInt(position);
+        int correctAnswer = buffer.getInt(position + 4);
+        Difficulty difficulty = DIFFICULTIES[buffer.getInt(position + 8)];
+        String[] choices = new String[buffer.getInt(position + 12)];
+        position += 16;
+        String category = readString(buffer, position);
+        position += 4 + buffer.getInt(position);
+        String question = readString(buffer, position);
+        position += 4 + buffer.getInt(position);
+        for (int i = 0; i < choices.length; i++) {
+            choices[i] = readString(buffer, position);
+            position += 4 + buffer.getInt(position);
+        }
+        return new Question(question, choices, correctAnswer, points, category, difficulty);
+    }
+
+    private static String readString(ByteBuffer buffer, int position) {
+        byte[] bytes = new byte[buffer.getInt(position)];
+        buffer.get(position + 4, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * writes questions in the format open() reads. the bank is written to a temporary file that then
+     * replaces the old one, so a server that has the old bank mapped can keep reading it.
+     */
+    public static void write(Path path, List<Question> questions) throws IOException {
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        writeFile(temporary, questions);
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeFile(Path path, List<Question> questions) throws IOException {
+        long dataStart = HEADER_SIZE + 8L * questions.size();
+        ByteBuffer index = ByteBuffer.allocate(8 * questions.size());
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.position(dataStart);
+            // not closed on its own because that would close the channel before the index is written
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            for (Question question : questions) {
+                index.putLong(dataStart + out.size());
+                out.writeInt(question.getPoints());
+                out.writeInt(question.getCorrectAnswer());
+                out.writeInt(question.getDifficulty().ordinal());
+                out.writeInt(question.getChoices().length);
+                writeString(out, question.getCategory());
+                writeString(out, question.getQuestion());
+                for (String choice : question.getChoices()) {
+                    writeString(out, choice);
+                }
+            }
+            long facetsOffset = dataStart + out.size();
+            Map<String, int[]> facets = QuestionBank.buildFacets(questions);
+            out.writeInt(facets.size());
+            for (Map.Entry<String, int[]> facet : facets.entrySet()) {
+                writeString(out, facet.getKey());
+                out.writeInt(facet.getValue().length);
+                for (int position : facet.getValue()) {
+                    out.writeInt(position);
+                }
+            }
+            out.flush();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION)
+                    .putInt(questions.size()).putLong(facetsOffset);
+            channel.write(header.flip(), 0);
+            channel.write(index.flip(), HEADER_SIZE);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static final class Entry {
+        final int index;
+        final Question question;
+
+        Entry(int index, Question question) {
+            this.index = index;
+            this.question = question;
+        }
+    }
+}
@@ -1,74 +1,123 @@
 package server;
 
-import java.util.Timer;
-import java.util.TimerTask;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import protocol.Frame;
+import protocol.Packet;
 
-public class MatchMaker extends Thread {
-    private static final int QUEUE_CAPACITY = 100;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * forms matches from the players waiting in its queues. there is no polling, a queue starts
+ * a match the moment enough players are waiting or its fill timeout goes up.
+ */
+public final class MatchMaker implements Lobby {
+    public static final String DEFAULT_QUEUE = "default";
     private static final int GAME_SIZE = 2;
-    private static final int REFRESH_TIME = 100;
-    private final BlockingQueue<Player> playersWaitingList;
+    static final Frame WAITING_MESSAGE = Frame.of(Packet.message("Waiting for other players..."));
+    private final Map<String, MatchQueue> queues;
     private final QuestionsGenerator questionsGenerator;
-    private final Timer timer;
+    private final TimingWheel timer;
+    private final ResultsJournal journal;
+    private final Leaderboard leaderboard;
+    private final LiveGames liveGames;
+
+    /**
+     * @param timer shared timer that runs the fill timeouts and the games
+     */
+    public MatchMaker(TimingWheel timer) {
+        this(timer, null, null);
+    }
 
-    public MatchMaker() {
-        playersWaitingList = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    /**
+     * @param timer       shared timer that runs the fill timeouts and the games
+     * @param journal     where the games write their results or null to not keep them
+     * @param leaderboard where the games add the points of their players or null to not keep them
+     */
+    public MatchMaker(TimingWheel timer, ResultsJournal journal, Leaderboard leaderboard) {
+        this.timer = timer;
+        this.journal = journal;
+        this.leaderboard = leaderboard;
+        liveGames = new LiveGames();
+        queues = new ConcurrentHashMap<>();
         questionsGenerator = new QuestionsGenerator();
-        timer = new Timer();
+        questionsGenerator.watch();
+        addQueue(DEFAULT_QUEUE, GAME_SIZE, GAME_SIZE, 0);
     }
 
     /**
-     * keeps checking if there are enough players to create a new game
+     * adds a queue. a queue can't be replaced because the players waiting in it would be lost.
+     *
+     * @param name        name players use to join the queue
+     * @param gameSize    number of players in a full match
+     * @param minGameSize smallest match that can be started when the fill timeout goes up
+     * @param fillTimeout time in milliseconds before a smaller match is started. 0 means always wait for a full match
+     * @throws IllegalArgumentException if there already is a queue with the name or the game sizes are invalid
      */
-    @Override
-    public void run() {
-        TimerTask task = new TimerTask() {
-            @Override
-            public void run() {
-                if (playersWaitingList.size() >= GAME_SIZE) {
-                    createGame();
-                }
-            }
-        };
-        timer.schedule(task, 0, REFRESH_TIME);
+    public void addQueue(String name, int gameSize, int minGameSize, long fillTimeout) {
+        MatchQueue queue = new MatchQueue(name, gameSize, minGameSize, fillTimeout, timer, this::createGame);
+        if (queues.putIfAbsent(name, queue) != null) {
+            throw new IllegalArgumentException("there already is a queue named " + name);
+        }
+        Logger.log("added match " + queue);
     }
 
     /**
-     * creates a new game and adds GAME_SIZE players to it from the waiting list
+     * creates a new game with the given players and starts it
+     *
+     * @param players players of the new game
      */
-    private synchronized void createGame() {
-        Game game = new Game(questionsGenerator);
+    public void createGame(List<Player> players) {
+        Events.MatchFormed event = new Events.MatchFormed();
+        event.begin();
+        Game game = new Game(questionsGenerator, timer, journal, leaderboard);
         Logger.log("created " + game);
-        for (int i = 0; i < GAME_SIZE; i++) {
-            game.addPlayer(nextPlayer());
+        for (Player player : players) {
+            game.addPlayer(player);
         }
+        event.end();
+        if (event.shouldCommit()) {
+            StringJoiner ids = new StringJoiner(",");
+            for (Player player : players) {
+                ids.add(String.valueOf(player.getId()));
+            }
+            event.matchId = game.getId();
+            event.playerIds = ids.toString();
+            event.commit();
+        }
+        liveGames.add(game);
         game.start();
     }
 
-    private Player nextPlayer() {
-        Player player = null;
-        try {
-            player = playersWaitingList.take();
-        } catch (InterruptedException e) {
-            Logger.log("queue operation interrupted at match maker");
-        }
-        return player;
+    /**
+     * @return the games of this match maker that are still running
+     */
+    public LiveGames getLiveGames() {
+        return liveGames;
     }
 
     /**
-     * adds player to the waiting list to be matched with other players
+     * adds player to the waiting list of the queue it asked for to be matched with other players
      *
      * @param player player to be added to the waiting list
      */
+    @Override
     public void add(Player player) {
-        try {
-            playersWaitingList.put(player);
-            player.sendMessage("Waiting for other players...");
-            Logger.log(player + " was added to the waiting queue");
-        } catch (InterruptedException e) {
-            Logger.log("failed to add " + player + " to the waiting queue");
-        }
+        add(player, player.getQueue());
+    }
+
+    /**
+     * adds player to the waiting list of a queue to be matched with other players.
+     * if there is no queue with that name the player joins the default queue.
+     *
+     * @param player    player to be added to the waiting list
+     * @param queueName name of the queue
+     */
+    public void add(Player player, String queueName) {
+        MatchQueue queue = queues.getOrDefault(queueName, queues.get(DEFAULT_QUEUE));
+        player.send(WAITING_MESSAGE);
+        Logger.log(player + " was added to the waiting " + queue);
+        queue.add(player);
     }
 }
@@ -0,0 +1,156 @@
+package server;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * a waiting list with its own game size. a match is formed the moment enough players are waiting,
+ * and if the oldest player waited longer than the fill timeout a smaller match is started
+ * as long as it has at least the minimum game size.
+ */
+public class MatchQueue {
+    private final String name;
+    private final int gameSize;
+    private final int minGameSize;
+    private final long fillTimeout;
+    private final TimingWheel timer;
+    private final Consumer<List<Player>> onMatch;
+    private final ArrayDeque<WaitingPlayer> waitingList;
+    private TimingWheel.Timeout fillTask;
+
+    /**
+     * @param name        name of the queue
+     * @param gameSize    number of players in a full match
+     * @param minGameSize smallest match that can be started when the fill timeout goes up
+     * @param fillTimeout how long the oldest player waits before a smaller match is started in milliseconds.
+     *                    0 means always wait for a full match
+     * @param timer       keeps time for the fill timeout
+     * @param onMatch     gets called with the players of every formed match
+     */
+    public MatchQueue(String name, int gameSize, int minGameSize, long fillTimeout,
+                      TimingWheel timer, Consumer<List<Player>> onMatch) {
+        if (minGameSize < 1 || minGameSize > gameSize) {
+            throw new IllegalArgumentException("invalid game size for queue " + name);
+        }
+        this.name = name;
+        this.gameSize = gameSize;
+        this.minGameSize = minGameSize;
+        this.fillTimeout = fillTimeout;
+        this.timer = timer;
+        this.onMatch = onMatch;
+        waitingList = new ArrayDeque<>();
+    }
+
+    private static class WaitingPlayer {
+        private final Player player;
+        private final long since;
+        private final Events.QueueWait event;
+
+        private WaitingPlayer(Player player, long since) {
+            this.player = player;
+            this.since = since;
+            event = new Events.QueueWait();
+            event.begin();
+        }
+    }
+
+    /**
+     * adds a player to the waiting list and starts a match if there are enough players
+     *
+     * @param player player to be added
+     */
+    public void add(Player player) {
+        List<Player> match;
+        synchronized (this) {
+            waitingList.add(new WaitingPlayer(player, System.currentTimeMillis()));
+            Metrics.playerWaiting();
+            match = nextMatch();
+        }
+        if (match != null) {
+            onMatch.accept(match);
+        }
+    }
+
+    /**
+     * gets called when the oldest player waited for the fill timeout
+     */
+    private void fillTimedOut() {
+        List<Player> match;
+        synchronized (this) {
+            fillTask = null;
+            match = nextMatch();
+        }
+        if (match != null) {
+            onMatch.accept(match);
+        }
+    }
+
+    /**
+     * takes the players of the next match out of the waiting list and makes sure the fill timeout
+     * is set for whoever stays waiting. must be called while holding the lock.
+     *
+     * @return players of the next match or null if a match can't be started yet
+     */
+    private List<Player> nextMatch() {
+        List<Player> match = null;
+        if (waitingList.size() >= gameSize) {
+            match = takePlayers(gameSize);
+        } else if (waitingList.size() >= minGameSize && hasWaitedTooLong()) {
+            match = takePlayers(waitingList.size());
+        }
+        scheduleFillTimeout();
+        return match;
+    }
+
+    private boolean hasWaitedTooLong() {
+        return fillTimeout > 0 && System.currentTimeMillis() - waitingList.peek().since >= fillTimeout;
+    }
+
+    private List<Player> takePlayers(int count) {
+        List<Player> players = new ArrayList<>(count);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < count; i++) {
+            WaitingPlayer waiting = waitingList.poll();
+            Metrics.playerMatched(now - waiting.since);
+            waiting.event.end();
+            if (waiting.event.shouldCommit()) {
+                waiting.event.playerId = waiting.player.getId();
+                waiting.event.queue = name;
+                waiting.event.commit();
+            }
+            players.add(waiting.player);
+        }
+        return players;
+    }
+
+    private void scheduleFillTimeout() {
+        if (fillTimeout <= 0) {
+            return;
+        }
+        if (waitingList.isEmpty()) {
+            if (fillTask != null) {
+                fillTask.cancel();
+                fillTask = null;
+            }
+        } else if (fillTask == null && !hasWaitedTooLong()) {
+            // if the oldest player already waited too long, the next arrival starts the match
+            long waited = System.currentTimeMillis() - waitingList.peek().since;
+            fillTask = timer.schedule(this::fillTimedOut, Math.max(0, fillTimeout - waited));
+        }
+    }
+
+    public synchronized int getWaitingCount() {
+        return waitingList.size();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return "queue " + name + " (" + minGameSize + "-" + gameSize + " players)";
+    }
+}
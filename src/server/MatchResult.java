@@ -0,0 +1,141 @@
+package server;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * the outcome of a finished match as it's kept in the results journal. nothing in it depends on the process
+ * that wrote it: the match id is unique across restarts of the server, players are known by their names,
+ * and questions by a hash of their text. the latencies of a round are in the same order as the players, in
+ * microseconds, and -1 means the player didn't answer before the round ended.
+ */
+public class MatchResult {
+    private final long matchId;
+    private final long finishedAt;
+    private final String[] playerNames;
+    private final int[] points;
+    private final Round[] rounds;
+
+    /**
+     * @param matchId    id from ResultsJournal.matchId
+     * @param finishedAt milliseconds since the epoch
+     */
+    public MatchResult(long matchId, long finishedAt, String[] playerNames, int[] points, Round[] rounds) {
+        this.matchId = matchId;
+        this.finishedAt = finishedAt;
+        this.playerNames = playerNames;
+        this.points = points;
+        this.rounds = rounds;
+    }
+
+    public static class Round {
+        private final long questionKey;
+        private final int winner;
+        private final long[] latencies;
+
+        /**
+         * @param questionKey key of the question, see Question.getKey
+         * @param winner      index of the player who answered correctly first or -1 if nobody did
+         */
+        public Round(long questionKey, int winner, long[] latencies) {
+            this.questionKey = questionKey;
+            this.winner = winner;
+            this.latencies = latencies;
+        }
+
+        public long getQuestionKey() {
+            return questionKey;
+        }
+
+        public int getWinner() {
+            return winner;
+        }
+
+        public long[] getLatencies() {
+            return latencies;
+        }
+    }
+
+    /**
+     * writes the match id, the time, the players count and every player's name and points, then the
+     * rounds count and every round's question key, winner index and latencies
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeLong(matchId);
+        out.writeLong(finishedAt);
+        out.writeInt(playerNames.length);
+        for (int i = 0; i < playerNames.length; i++) {
+            out.writeUTF(playerNames[i] == null ? "" : playerNames[i]);
+            out.writeInt(points[i]);
+        }
+        out.writeInt(rounds.length);
+        for (Round round : rounds) {
+            out.writeLong(round.questionKey);
+            out.writeInt(round.winner);
+            for (long latency : round.latencies) {
+                out.writeLong(latency);
+            }
+        }
+    }
+
+    public static MatchResult readFrom(DataInput in) throws IOException {
+        long matchId = in.readLong();
+        long finishedAt = in.readLong();
+        int playersCount = in.readInt();
+        String[] playerNames = new String[playersCount];
+        int[] points = new int[playersCount];
+        for (int i = 0; i < playersCount; i++) {
+            playerNames[i] = in.readUTF();
+            points[i] = in.readInt();
+        }
+        Round[] rounds = new Round[in.readInt()];
+        for (int i = 0; i < rounds.length; i++) {
+            long questionKey = in.readLong();
+            int winner = in.readInt();
+            long[] latencies = new long[playersCount];
+            for (int j = 0; j < playersCount; j++) {
+                latencies[j] = in.readLong();
+            }
+            rounds[i] = new Round(questionKey, winner, latencies);
+        }
+        return new MatchResult(matchId, finishedAt, playerNames, points, rounds);
+    }
+
+    public long getMatchId() {
+        return matchId;
+    }
+
+    public long getFinishedAt() {
+        return finishedAt;
+    }
+
+    public String[] getPlayerNames() {
+        return playerNames;
+    }
+
+    public int[] getPoints() {
+        return points;
+    }
+
+    public Round[] getRounds() {
+        return rounds;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder s = new StringBuilder("match ").append(matchId).append(" at ").append(finishedAt).append(':');
+        for (int i = 0; i < playerNames.length; i++) {
+            s.append(' ').append(playerNames[i]).append(' ').append(points[i]);
+        }
+        for (Round round : rounds) {
+            s.append(" | q").append(Long.toHexString(round.questionKey)).append(" won by ")
+                    .append(round.winner < 0 ? "nobody" : playerNames[round.winner]).append(" in");
+            for (long latency : round.latencies) {
+                s.append(' ').append(latency);
+            }
+            s.append("us");
+        }
+        return s.toString();
+    }
+}
@@ -0,0 +1,34 @@
+package server;
+
+import java.nio.IntBuffer;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * a bank that keeps all of its questions on the heap, used for questions loaded from JSON
+ */
+public class MemoryQuestionBank implements QuestionBank {
+    private final Question[] questions;
+    private final Map<String, int[]> facets;
+
+    public MemoryQuestionBank(List<Question> questions) {
+        this.questions = questions.toArray(new Question[0]);
+        facets = QuestionBank.buildFacets(questions);
+    }
+
+    @Override
+    public int size() {
+        return questions.length;
+    }
+
+    @Override
+    public Question get(int index) {
+        return questions[index];
+    }
+
+    @Override
+    public IntBuffer getFacet(String category, Difficulty difficulty) {
+        int[] positions = facets.get(QuestionBank.facetKey(category, difficulty));
+        return positions == null ? null : IntBuffer.wrap(positions);
+    }
+}
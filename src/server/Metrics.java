@@ -0,0 +1,210 @@
+package server;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * counters and histograms of the whole server. recording is a LongAdder increment so it can be called
+ * from any hot path. the numbers are shown over JMX and can be dumped to the log periodically.
+ */
+public class Metrics implements MetricsMXBean {
+    public static final String OBJECT_NAME = "server:type=Metrics";
+    private static final Metrics instance = new Metrics();
+    private static final LongAdder connectionsOpened = new LongAdder();
+    private static final LongAdder connectionsClosed = new LongAdder();
+    private static final LongAdder waitingPlayers = new LongAdder();
+    private static final LongAdder gamesStarted = new LongAdder();
+    private static final LongAdder gamesFinished = new LongAdder();
+    private static final LongAdder questionsAsked = new LongAdder();
+    private static final LongAdder answerTimeouts = new LongAdder();
+    private static final LongAdder bytesIn = new LongAdder();
+    private static final LongAdder bytesOut = new LongAdder();
+    private static final LongAdder journalFailures = new LongAdder();
+    private static final Histogram timeToMatch = new Histogram();
+    private static final Histogram roundDuration = new Histogram();
+    private static final Histogram answerLatency = new Histogram();
+
+    private Metrics() {
+    }
+
+    public static Metrics get() {
+        return instance;
+    }
+
+    /**
+     * registers the metrics with the platform MBean server so tools like jconsole can read them
+     */
+    public static void register() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(instance, new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            Logger.warn("failed to register metrics: ", e);
+        }
+    }
+
+    /**
+     * logs a snapshot of the metrics periodically
+     *
+     * @param timer  runs the dump
+     * @param period time between two dumps in milliseconds
+     * @return handle that can be used to stop the dump
+     */
+    public static TimingWheel.Timeout dumpEvery(TimingWheel timer, long period) {
+        return timer.scheduleAtFixedRate(() -> Logger.log(instance.toString()), period, period);
+    }
+
+    public static void connectionOpened() {
+        connectionsOpened.increment();
+    }
+
+    public static void connectionClosed() {
+        connectionsClosed.increment();
+    }
+
+    public static void playerWaiting() {
+        waitingPlayers.increment();
+    }
+
+    /**
+     * @param waitedMillis how long the player waited in the queue
+     */
+    public static void playerMatched(long waitedMillis) {
+        waitingPlayers.decrement();
+        timeToMatch.record(waitedMillis * 1000);
+    }
+
+    public static void gameStarted() {
+        gamesStarted.increment();
+    }
+
+    public static void gameFinished() {
+        gamesFinished.increment();
+    }
+
+    /**
+     * @param nanos time from sending the question until the round ended
+     */
+    public static void roundEnded(long nanos) {
+        roundDuration.record(nanos / 1000);
+    }
+
+    public static void questionAsked() {
+        questionsAsked.increment();
+    }
+
+    /**
+     * @param nanos time from sending the question until the answer arrived
+     */
+    public static void answerReceived(long nanos) {
+        answerLatency.record(nanos / 1000);
+    }
+
+    public static void answerTimedOut() {
+        answerTimeouts.increment();
+    }
+
+    public static void bytesIn(long count) {
+        bytesIn.add(count);
+    }
+
+    public static void bytesOut(long count) {
+        bytesOut.add(count);
+    }
+
+    public static void journalFailed() {
+        journalFailures.increment();
+    }
+
+    @Override
+    public long getActiveConnections() {
+        return connectionsOpened.sum() - connectionsClosed.sum();
+    }
+
+    @Override
+    public long getConnectionsOpened() {
+        return connectionsOpened.sum();
+    }
+
+    @Override
+    public long getWaitingPlayers() {
+        return waitingPlayers.sum();
+    }
+
+    @Override
+    public long getLiveGames() {
+        return gamesStarted.sum() - gamesFinished.sum();
+    }
+
+    @Override
+    public long getGamesStarted() {
+        return gamesStarted.sum();
+    }
+
+    @Override
+    public long getQuestionsAsked() {
+        return questionsAsked.sum();
+    }
+
+    @Override
+    public long getAnswerTimeouts() {
+        return answerTimeouts.sum();
+    }
+
+    @Override
+    public double getTimeoutRate() {
+        long asked = questionsAsked.sum();
+        return asked == 0 ? 0 : (double) answerTimeouts.sum() / asked;
+    }
+
+    @Override
+    public long getBytesIn() {
+        return bytesIn.sum();
+    }
+
+    @Override
+    public long getBytesOut() {
+        return bytesOut.sum();
+    }
+
+    @Override
+    public long getOutboundDepth() {
+        return OutboundQueue.getTotalDepth();
+    }
+
+    @Override
+    public long getOutboundDropped() {
+        return OutboundQueue.getTotalDropped();
+    }
+
+    @Override
+    public long getJournalFailures() {
+        return journalFailures.sum();
+    }
+
+    @Override
+    public Histogram.Snapshot getTimeToMatch() {
+        return timeToMatch.snapshot();
+    }
+
+    @Override
+    public Histogram.Snapshot getRoundDuration() {
+        return roundDuration.snapshot();
+    }
+
+    @Override
+    public Histogram.Snapshot getAnswerLatency() {
+        return answerLatency.snapshot();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("metrics: connections=%d waiting=%d games=%d questions=%d timeouts=%.3f"
+                        + " in=%dB out=%dB outbound=%d dropped=%d journal failures=%d%n  time to match (us): %s%n"
+                        + "  round duration (us): %s%n  answer latency (us): %s",
+                getActiveConnections(), getWaitingPlayers(), getLiveGames(), getQuestionsAsked(),
+                getTimeoutRate(), getBytesIn(), getBytesOut(), getOutboundDepth(), getOutboundDropped(),
+                getJournalFailures(), getTimeToMatch(), getRoundDuration(), getAnswerLatency());
+    }
+}
@@ -0,0 +1,44 @@
+package server;
+
+/**
+ * what the server shows over JMX under server:type=Metrics. times are in microseconds.
+ */
+public interface MetricsMXBean {
+    long getActiveConnections();
+
+    long getConnectionsOpened();
+
+    long getWaitingPlayers();
+
+    long getLiveGames();
+
+    long getGamesStarted();
+
+    long getQuestionsAsked();
+
+    long getAnswerTimeouts();
+
+    /**
+     * @return fraction of asked questions that didn't get an answer in time
+     */
+    double getTimeoutRate();
+
+    long getBytesIn();
+
+    long getBytesOut();
+
+    long getOutboundDepth();
+
+    long getOutboundDropped();
+
+    /**
+     * @return number of times writing to the results journal failed
+     */
+    long getJournalFailures();
+
+    Histogram.Snapshot getTimeToMatch();
+
+    Histogram.Snapshot getRoundDuration();
+
+    Histogram.Snapshot getAnswerLatency();
+}
@@ -0,0 +1,473 @@
+package server;
+
+import protocol.Codec;
+import protocol.Frame;
+import protocol.Packet;
+import protocol.PacketType;
+import protocol.ProtocolException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * non-blocking version of PlayerSocket. all reads and writes happen on the SelectorLoop that owns the channel
+ * so a connection doesn't need a thread of its own while it's waiting.
+ */
+public class NioPlayerSocket implements Connection, SelectorLoop.Handler {
+    private static final String INVALID_PACKET = "received invalid packet from ";
+    private static final int BUFFER_SIZE = 4096;
+    private final SocketChannel channel;
+    private final SelectorLoop loop;
+    private final TimingWheel timer;
+    private final Consumer<NioPlayerSocket> onConnected;
+    private final Packet packet;
+    private final OutboundQueue outbound;
+    private final Events.Handshake handshake;
+    private final SessionRegistry sessions;
+    private final Leaderboard leaderboard;
+    private final CompletableFuture<Void> closed;
+    private ByteBuffer readBuffer;
+    private ByteBuffer writing;
+    private Frame writingFrame;
+    private Events.FrameWrite writeEvent;
+    private Codec codec;
+    private SelectionKey key;
+    private volatile String name;
+    private String queue;
+    private volatile String token;
+    private volatile boolean resumed;
+    private volatile boolean spectator;
+    private volatile int spectatedMatch = -1;
+    private volatile long timeout;
+    private boolean closeWhenFlushed; // closed once everything queued is written, like after a leaderboard query
+    private CompletableFuture<Integer> pendingAnswer;
+    private TimingWheel.Timeout answerTimeout;
+    private volatile long bytesIn;
+    private volatile long bytesOut;
+
+    /**
+     * @param channel     accepted channel
+     * @param loop        the loop that will handle the channel
+     * @param timer       keeps time for answer timeouts and completes the answers on its workers
+     * @param onConnected gets called when the client sends a valid name
+     * @param policy      what to do when the client reads slower than the server writes
+     * @param sessions    sessions the client can resume or null if resuming isn't allowed
+     * @param leaderboard answers leaderboard packets or null if they aren't allowed
+     */
+    public NioPlayerSocket(SocketChannel channel, SelectorLoop loop, TimingWheel timer,
+                           Consumer<NioPlayerSocket> onConnected, SlowConsumerPolicy policy,
+                           SessionRegistry sessions, Leaderboard leaderboard) {
+        this.channel = channel;
+        this.sessions = sessions;
+        this.leaderboard = leaderboard;
+        closed = new CompletableFuture<>();
+        this.loop = loop;
+        this.timer = timer;
+        this.onConnected = onConnected;
+        readBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+        packet = new Packet();
+        outbound = new OutboundQueue(OutboundQueue.DEFAULT_CAPACITY, policy);
+        codec = Codec.JSON;
+        handshake = new Events.Handshake();
+        handshake.begin();
+    }
+
+    /**
+     * registers the channel with its loop and starts waiting for the name packet
+     */
+    public void register() {
+        loop.execute(() -> {
+            try {
+                key = loop.register(channel, SelectionKey.OP_READ, this);
+            } catch (IOException e) {
+                onError(e);
+            }
+        });
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getQueue() {
+        return queue;
+    }
+
+    @Override
+    public String getToken() {
+        return token;
+    }
+
+    @Override
+    public boolean isResumed() {
+        return resumed;
+    }
+
+    @Override
+    public boolean isSpectator() {
+        return spectator;
+    }
+
+    @Override
+    public int getSpectatedMatch() {
+        return spectatedMatch;
+    }
+
+    @Override
+    public void setTimeOut(long timeout) {
+        this.timeout = timeout;
+    }
+
+    @Override
+    public void send(Frame frame) {
+        loop.execute(() -> {
+            write(frame);
+            Logger.debug("sent packet to ", channel);
+        });
+    }
+
+    SelectorLoop getLoop() {
+        return loop;
+    }
+
+    /**
+     * sends a frame without handing it to the loop first. must be called from the loop thread, a
+     * BroadcastGroup uses it to send one frame to all of its members on a loop in a single task.
+     */
+    void sendOnLoop(Frame frame) {
+        write(frame);
+    }
+
+    @Override
+    public CompletableFuture<Integer> sendQuestion(Frame question) {
+        CompletableFuture<Integer> answer = new CompletableFuture<>();
+        loop.execute(() -> {
+            if (!channel.isOpen()) {
+                timer.execute(() -> answer.complete(NO_ANSWER));
+                return;
+            }
+            completeAnswer(NO_ANSWER);
+            pendingAnswer = answer;
+            if (timeout > 0) {
+                answerTimeout = timer.schedule(() -> loop.execute(() -> answerTimedOut(answer)), timeout);
+            }
+            write(question);
+            Logger.debug("sent question to ", channel);
+        });
+        return answer;
+    }
+
+    private void answerTimedOut(CompletableFuture<Integer> answer) {
+        if (pendingAnswer != answer) {
+            return; // the answer arrived while the timeout was on its way to the loop
+        }
+        Logger.debug("didn't receive an answer from ", channel);
+        completeAnswer(TIMED_OUT);
+    }
+
+    /**
+     * completes the question that is waiting for an answer if there is one. must be called from the loop thread.
+     * the future is completed on a worker of the timer, which runs the games anyway, because completing it can
+     * end the round of a game. a thread for every answer would cost more than the loop saves.
+     */
+    private void completeAnswer(int answer) {
+        if (answerTimeout != null) {
+            answerTimeout.cancel();
+            answerTimeout = null;
+        }
+        if (pendingAnswer != null) {
+            CompletableFuture<Integer> future = pendingAnswer;
+            pendingAnswer = null;
+            timer.execute(() -> future.complete(answer));
+        }
+    }
+
+    /**
+     * queues a frame to be written and tries to write it right away. must be called from the loop thread.
+     */
+    private void write(Frame frame) {
+        if (key == null || !key.isValid()) {
+            return;
+        }
+        if (!outbound.offer(frame)) {
+            Logger.warn("disconnecting slow client at ", channel);
+            closeNow();
+            return;
+        }
+        tryFlush();
+    }
+
+    private void tryFlush() {
+        try {
+            flush();
+        } catch (IOException e) {
+            onError(e);
+        }
+    }
+
+    /**
+     * writes queued frames until the channel can't take more. frames are turned into bytes here, on the
+     * loop thread, where the protocol of the connection is decided.
+     */
+    private void flush() throws IOException {
+        while (true) {
+            if (writing == null) {
+                Frame frame = outbound.poll();
+                if (frame == null) {
+                    break;
+                }
+                writing = frame.buffer(codec);
+                writingFrame = frame;
+                writeEvent = new Events.FrameWrite();
+                writeEvent.begin();
+            }
+            int written = channel.write(writing);
+            bytesOut += written; // only the loop thread writes
+            Metrics.bytesOut(written);
+            if (writing.hasRemaining()) {
+                key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                return;
+            }
+            writing = null;
+            commitWrite();
+        }
+        key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+        if (closeWhenFlushed) {
+            closeNow();
+        }
+    }
+
+    /**
+     * commits the event of the frame that was just written. the response to the name packet has no event.
+     */
+    private void commitWrite() {
+        if (writeEvent == null) {
+            return;
+        }
+        writeEvent.end();
+        if (writeEvent.shouldCommit()) {
+            writeEvent.address = String.valueOf(channel.socket().getRemoteSocketAddress());
+            writeEvent.type = writingFrame.getType().name();
+            writeEvent.size = writingFrame.size(codec);
+            writeEvent.commit();
+        }
+        writeEvent = null;
+        writingFrame = null;
+    }
+
+    @Override
+    public void onReady(SelectionKey key) throws IOException {
+        if (key.isWritable()) {
+            flush();
+        }
+        if (key.isValid() && key.isReadable()) {
+            read();
+        }
+    }
+
+    private void read() throws IOException {
+        int count = channel.read(readBuffer);
+        if (count < 0) {
+            throw new IOException("connection closed by client");
+        }
+        bytesIn += count; // only the loop thread reads
+        Metrics.bytesIn(count);
+        readBuffer.flip();
+        while (key.isValid()) {
+            try {
+                if (!codec.decode(readBuffer, packet)) {
+                    break;
+                }
+            } catch (ProtocolException e) {
+                invalidPacket();
+                continue;
+            }
+            processPacket(packet);
+        }
+        readBuffer.compact();
+        if (!readBuffer.hasRemaining()) {
+            // a packet bigger than the buffer is still arriving
+            ByteBuffer bigger = ByteBuffer.allocate(readBuffer.capacity() * 2);
+            readBuffer.flip();
+            bigger.put(readBuffer);
+            readBuffer = bigger;
+        }
+    }
+
+    /**
+     * an invalid line of JSON can be skipped, but the connection can't be trusted anymore if the
+     * name packet or a binary frame was invalid
+     */
+    private void invalidPacket() {
+        Logger.warn(INVALID_PACKET, channel);
+        if (token == null) {
+            sendResponse(false, null);
+            closeNow();
+        } else if (codec != Codec.JSON) {
+            closeNow();
+        }
+    }
+
+    private void processPacket(Packet packet) {
+        if (closeWhenFlushed || spectator) {
+            return; // nothing is expected after a query and spectators never answer
+        }
+        if (token == null) {
+            loadName(packet);
+        } else {
+            loadAnswer(packet);
+        }
+    }
+
+    /**
+     * reads the name, resume or spectate packet sent by the client and sends back a response confirming the
+     * connection with the token of its session. if the client asked for another protocol that the server
+     * knows, the response accepts it and the rest of the connection uses it.
+     * a leaderboard packet gets the response and the leaderboard in JSON, and the connection is closed.
+     */
+    private void loadName(Packet packet) {
+        if (packet.getType() == PacketType.NAME && Player.isValidName(packet.getText())) {
+            queue = packet.getQueue() == null ? MatchMaker.DEFAULT_QUEUE : packet.getQueue();
+            name = packet.getText();
+            token = SessionRegistry.newToken();
+            Logger.debug("received name from ", channel);
+        } else if (packet.getType() == PacketType.RESUME && sessions != null
+                && sessions.canResume(packet.getToken())) {
+            token = packet.getToken();
+            resumed = true;
+            Logger.debug("received resume from ", channel);
+        } else if (packet.getType() == PacketType.SPECTATE) {
+            spectator = true;
+            spectatedMatch = packet.getNumber();
+            // a spectator that can't keep up is dropped, the match doesn't wait for it
+            outbound.setPolicy(SlowConsumerPolicy.DISCONNECT);
+            Logger.debug("received spectate from ", channel);
+        } else if (packet.getType() == PacketType.LEADERBOARD && leaderboard != null
+                && (packet.getText() == null || Player.isValidName(packet.getText()))) {
+            Logger.debug("received leaderboard query from ", channel);
+            sendResponse(true, null);
+            closeWhenFlushed = true;
+            write(Frame.of(Packet.message(leaderboard.describe(packet.getNumber(), packet.getText()))));
+            return;
+        } else {
+            Logger.warn(packet.getType() == PacketType.RESUME ? "can't resume session for " : INVALID_PACKET,
+                    channel);
+            sendResponse(false, null);
+            closeNow();
+            return;
+        }
+        Codec requested = Codec.forName(packet.getProtocol());
+        sendResponse(true, requested);
+        if (requested != null) {
+            codec = requested;
+        }
+        onConnected.accept(this);
+    }
+
+    private void loadAnswer(Packet packet) {
+        if (packet.getType() == PacketType.ANSWER && pendingAnswer != null) {
+            Logger.debug("received answer from ", channel);
+            completeAnswer(packet.getNumber());
+        } else {
+            Logger.warn(INVALID_PACKET, channel);
+        }
+    }
+
+    /**
+     * sends the response to the name packet. the response is always sent as JSON.
+     */
+    private void sendResponse(boolean successful, Codec accepted) {
+        Packet response = Packet.response(successful).setToken(successful ? token : null);
+        if (accepted != null) {
+            response.setProtocol(accepted.getName());
+        }
+        handshake.end();
+        if (handshake.shouldCommit()) {
+            handshake.address = String.valueOf(channel.socket().getRemoteSocketAddress());
+            handshake.name = name;
+            handshake.protocol = accepted == null ? Codec.JSON.getName() : accepted.getName();
+            handshake.successful = successful;
+            handshake.commit();
+        }
+        if (key == null || !key.isValid()) {
+            return;
+        }
+        // nothing else is written before the response so it can skip the queue
+        writing = Codec.JSON.encode(response);
+        tryFlush();
+        Logger.debug("sent response to ", channel);
+    }
+
+    @Override
+    public void onError(IOException e) {
+        Logger.log("lost connection with " + channel);
+        closeNow();
+    }
+
+    /**
+     * closes the channel on its loop thread
+     */
+    @Override
+    public void close() {
+        loop.execute(this::closeNow);
+    }
+
+    @Override
+    public void closeWhenSent() {
+        loop.execute(() -> {
+            closeWhenFlushed = true;
+            if (key != null && key.isValid()) {
+                tryFlush();
+            } else {
+                closeNow();
+            }
+        });
+    }
+
+    @Override
+    public void onClose(Runnable listener) {
+        closed.thenRun(listener);
+    }
+
+    /**
+     * must be called from the loop thread
+     */
+    private void closeNow() {
+        completeAnswer(NO_ANSWER);
+        outbound.clear();
+        if (key != null) {
+            key.cancel();
+        }
+        if (!channel.isOpen()) {
+            closed.complete(null);
+            return;
+        }
+        Logger.debug("closed after " + bytesIn + " bytes in and " + bytesOut + " bytes out: ", channel);
+        try {
+            channel.close();
+        } catch (IOException e) {
+            Logger.warn("failed to close ", channel);
+        }
+        Metrics.connectionClosed();
+        closed.complete(null);
+    }
+
+    public long getBytesIn() {
+        return bytesIn;
+    }
+
+    public long getBytesOut() {
+        return bytesOut;
+    }
+
+    @Override
+    public String toString() {
+        return channel.toString();
+    }
+}
@@ -0,0 +1,124 @@
+package server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.Executor;
+
+/**
+ * accepts connections on a non-blocking channel and spreads them over a few selector loops.
+ * the first loop also handles accepting new connections.
+ */
+public class NioServer implements SelectorLoop.Handler {
+    private static final long ACCEPT_BACKOFF = 100; // milliseconds
+    private final ClientHandler clientHandler;
+    private final Executor executor;
+    private final TimingWheel timer;
+    private final SlowConsumerPolicy policy;
+    private final SessionRegistry sessions;
+    private final Leaderboard leaderboard;
+    private final SelectorLoop[] loops;
+    private ServerSocketChannel serverChannel;
+    private int nextLoop;
+
+    /**
+     * @param clientHandler receives the connections after the name handshake
+     * @param executor      runs the client handler
+     * @param timer         keeps time for answer timeouts
+     * @param loopsCount    number of selector loops
+     * @param policy        what to do with clients that read slower than the server writes
+     * @param sessions      sessions clients can resume
+     * @param leaderboard   answers the leaderboard packets
+     */
+    public NioServer(ClientHandler clientHandler, Executor executor, TimingWheel timer, int loopsCount,
+                     SlowConsumerPolicy policy, SessionRegistry sessions, Leaderboard leaderboard)
+            throws IOException {
+        this.clientHandler = clientHandler;
+        this.executor = executor;
+        this.timer = timer;
+        this.policy = policy;
+        this.sessions = sessions;
+        this.leaderboard = leaderboard;
+        loops = new SelectorLoop[loopsCount];
+        for (int i = 0; i < loopsCount; i++) {
+            loops[i] = new SelectorLoop("selector-loop-" + i);
+        }
+    }
+
+    /**
+     * starts the loops and begins accepting connections
+     *
+     * @param port port to listen on
+     */
+    public void start(int port) throws IOException {
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        serverChannel.bind(new InetSocketAddress(port));
+        for (SelectorLoop loop : loops) {
+            loop.start();
+        }
+        loops[0].execute(() -> {
+            try {
+                loops[0].register(serverChannel, SelectionKey.OP_ACCEPT, this);
+            } catch (IOException e) {
+                onError(e);
+            }
+        });
+    }
+
+    @Override
+    public void onReady(SelectionKey key) throws IOException {
+        SocketChannel client;
+        while ((client = accept(key)) != null) {
+            Logger.log("connected to " + client);
+            Metrics.connectionOpened();
+            NioPlayerSocket socket = new NioPlayerSocket(client, nextLoop(), timer, this::onConnected,
+                    policy, sessions, leaderboard);
+            socket.register();
+        }
+    }
+
+    /**
+     * accepts the next connection. when that fails, for example because the process ran out of file
+     * descriptors, the pending connection stays pending and the key would be selected again right away,
+     * so accepting pauses for a moment instead of spinning the loop.
+     *
+     * @return the connection, or null if there is none or accepting failed
+     */
+    private SocketChannel accept(SelectionKey key) {
+        try {
+            return serverChannel.accept();
+        } catch (IOException e) {
+            Logger.error("failed to accept a connection, pausing for " + ACCEPT_BACKOFF + "ms: " + e);
+            key.interestOps(0);
+            timer.schedule(() -> loops[0].execute(() -> {
+                if (key.isValid()) {
+                    key.interestOps(SelectionKey.OP_ACCEPT);
+                }
+            }), ACCEPT_BACKOFF);
+            return null;
+        }
+    }
+
+    /**
+     * hands the connection to the client handler outside the loop because adding
+     * to the waiting list can block
+     */
+    private void onConnected(NioPlayerSocket socket) {
+        executor.execute(() -> clientHandler.handle(socket));
+    }
+
+    private SelectorLoop nextLoop() {
+        SelectorLoop loop = loops[nextLoop];
+        nextLoop = (nextLoop + 1) % loops.length;
+        return loop;
+    }
+
+    @Override
+    public void onError(IOException e) {
+        Logger.error("server failed: " + e);
+    }
+}
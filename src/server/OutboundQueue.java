@@ -0,0 +1,130 @@
+package server;
+
+import protocol.Frame;
+import protocol.PacketType;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * bounded queue of frames waiting to be written to one connection. the game only adds frames to the queue
+ * and the connection drains it on its own, so a client with a full send buffer can't hold up the others.
+ * when the queue is full the SlowConsumerPolicy decides what happens to the new frame.
+ */
+public class OutboundQueue {
+    public static final int DEFAULT_CAPACITY = 64; // frames
+    private static final LongAdder totalDepth = new LongAdder();
+    private static final LongAdder totalDropped = new LongAdder();
+    private final ArrayDeque<Frame> frames;
+    private final int capacity;
+    private SlowConsumerPolicy policy;
+    private int maxDepth;
+    private long droppedCount;
+
+    public OutboundQueue(int capacity, SlowConsumerPolicy policy) {
+        this.capacity = capacity;
+        this.policy = policy;
+        frames = new ArrayDeque<>();
+    }
+
+    /**
+     * changes what happens to frames that don't fit anymore, spectators switch to DISCONNECT after the handshake
+     */
+    public synchronized void setPolicy(SlowConsumerPolicy policy) {
+        this.policy = policy;
+    }
+
+    /**
+     * @return false if the connection can't keep up and must be closed
+     */
+    public synchronized boolean offer(Frame frame) {
+        if (frames.size() >= capacity) {
+            switch (policy) {
+                case COALESCE -> {
+                    if (!removeOldestMessage()) {
+                        return false;
+                    }
+                }
+                case DROP -> {
+                    dropped();
+                    return true;
+                }
+                case DISCONNECT -> {
+                    return false;
+                }
+            }
+        }
+        frames.add(frame);
+        totalDepth.increment();
+        maxDepth = Math.max(maxDepth, frames.size());
+        return true;
+    }
+
+    private boolean removeOldestMessage() {
+        Iterator<Frame> iterator = frames.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().getType() == PacketType.MESSAGE) {
+                iterator.remove();
+                totalDepth.decrement();
+                dropped();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void dropped() {
+        droppedCount++;
+        totalDropped.increment();
+    }
+
+    /**
+     * @return the oldest frame or null if the queue is empty
+     */
+    public synchronized Frame poll() {
+        Frame frame = frames.poll();
+        if (frame != null) {
+            totalDepth.decrement();
+        }
+        return frame;
+    }
+
+    public synchronized boolean isEmpty() {
+        return frames.isEmpty();
+    }
+
+    /**
+     * drops everything that is waiting, used when the connection is closed
+     */
+    public synchronized void clear() {
+        totalDepth.add(-frames.size());
+        frames.clear();
+    }
+
+    public synchronized int getDepth() {
+        return frames.size();
+    }
+
+    public synchronized int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public synchronized long getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * @return number of frames waiting in all queues
+     */
+    public static long getTotalDepth() {
+        return totalDepth.sum();
+    }
+
+    /**
+     * @return number of frames dropped by all queues
+     */
+    public static long getTotalDropped() {
+        return totalDropped.sum();
+    }
+}
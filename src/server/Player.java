@@ -1,26 +1,42 @@
 package server;
 
-import java.io.IOException;
-import java.net.Socket;
+import protocol.Frame;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class Player {
-    private static int idCounter = 0;
+    public static final int DEFAULT_RATING = 1000;
+    public static final int MAX_NAME_LENGTH = 64; // characters, far below what the leaderboard snapshot can store
+    private static final AtomicInteger idCounter = new AtomicInteger();
     private final int id;
     private final String name;
-    private final PlayerSocket socket;
+    private final CompletableFuture<Void> finished;
+    private volatile Connection socket;
+    private volatile long questionTime;
+    private volatile boolean done;
     private int points;
+    private volatile int rating;
 
-    public Player(Socket socket) throws IOException {
-        this.socket = new PlayerSocket(socket);
-        this.name = this.socket.getName();
+    public Player(Connection connection) {
+        this.socket = connection;
+        this.name = connection.getName();
         this.id = nextId();
         points = 0;
+        rating = DEFAULT_RATING;
+        finished = new CompletableFuture<>();
     }
 
-    private synchronized int nextId() {
-        int id = idCounter;
-        idCounter += 1;
-        return id;
+    /**
+     * @return true if the name can be given to a player, it's checked in the handshake
+     */
+    public static boolean isValidName(String name) {
+        return name != null && name.length() <= MAX_NAME_LENGTH;
+    }
+
+    private static int nextId() {
+        // games and players are created by many threads at once
+        return idCounter.getAndIncrement();
     }
 
     @Override
@@ -29,17 +45,65 @@ public class Player {
     }
 
     public void setQuestionTime(long time) {
+        questionTime = time;
         socket.setTimeOut(time);
     }
 
+    /**
+     * moves the player to a new connection after the client resumed its session.
+     * everything sent from now on goes to the new connection.
+     */
+    public void attach(Connection connection) {
+        if (connection == socket) {
+            return;
+        }
+        if (questionTime > 0) {
+            connection.setTimeOut(questionTime);
+        }
+        socket = connection;
+    }
+
+    /**
+     * marks the match of the player as over, after that its session can't be resumed
+     */
+    public void finish() {
+        done = true;
+        finished.complete(null);
+    }
+
+    /**
+     * @param listener gets called when the match of the player is over, right away if it already is
+     */
+    public void onFinish(Runnable listener) {
+        finished.thenRun(listener);
+    }
+
+    public boolean isDone() {
+        return done;
+    }
+
     public void sendMessage(String message) {
         socket.sendMessage(message);
     }
 
-    public Answer sendQuestion(Question question) {
-        int answerNumber = socket.sendQuestion(question.toString());
+    public void send(Frame frame) {
+        socket.send(frame);
+    }
+
+    public CompletableFuture<Answer> sendQuestion(Question question) {
         int questionId = question.getId();
-        return new Answer(questionId, answerNumber, id);
+        long sent = System.nanoTime();
+        Metrics.questionAsked();
+        return socket.sendQuestion(question.getFrame())
+                .thenApply(answerNumber -> {
+                    long latency = System.nanoTime() - sent;
+                    if (answerNumber == Connection.TIMED_OUT) {
+                        Metrics.answerTimedOut();
+                    } else if (answerNumber != Connection.NO_ANSWER) {
+                        Metrics.answerReceived(latency);
+                    }
+                    return new Answer(questionId, answerNumber, id, latency);
+                });
     }
 
     public int getId() {
@@ -50,6 +114,18 @@ public class Player {
         return name;
     }
 
+    public String getQueue() {
+        return socket.getQueue();
+    }
+
+    public int getRating() {
+        return rating;
+    }
+
+    public void setRating(int rating) {
+        this.rating = rating;
+    }
+
     public void addPoints(int points) {
         this.points += points;
     }
@@ -1,121 +1,434 @@
 package server;
 
-import org.json.JSONObject;
+import protocol.Codec;
+import protocol.Frame;
+import protocol.Packet;
+import protocol.PacketReader;
+import protocol.PacketType;
+import protocol.ProtocolException;
 
-import java.io.BufferedReader;
+import java.io.BufferedOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.Socket;
 import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
-public class PlayerSocket {
+public class PlayerSocket implements Connection {
     private static final String INVALID_PACKET = "received invalid packet from ";
     private final Socket socket;
-    private final BufferedReader reader;
-    private final PrintWriter writer;
-    private final String name;
+    private final PacketReader reader;
+    private final OutputStream writer;
+    private final Executor executor;
+    private final OutboundQueue outbound;
+    private final AtomicBoolean draining;
+    private final CountingInputStream in;
+    private final SessionRegistry sessions;
+    private final Leaderboard leaderboard;
+    private final CompletableFuture<Void> closed;
+    private final AtomicReference<CompletableFuture<Integer>> pendingAnswer;
+    private String name;
+    private String queue;
+    private String token;
+    private boolean resumed;
+    private boolean spectator;
+    private int spectatedMatch = -1;
+    private Packet query;
+    private volatile boolean closeWhenSent;
+    private volatile Codec codec;
+    private volatile long bytesOut;
+    private volatile long timeout;
+    private volatile long askedAt;
 
-
-    public PlayerSocket(Socket socket) throws IOException {
+    /**
+     * @param socket      accepted client socket
+     * @param executor    runs the threads that wait for answers and write to the client
+     * @param policy      what to do when the client reads slower than the server writes
+     * @param sessions    sessions the client can resume or null if resuming isn't allowed
+     * @param leaderboard answers leaderboard packets or null if they aren't allowed
+     */
+    public PlayerSocket(Socket socket, Executor executor, SlowConsumerPolicy policy, SessionRegistry sessions,
+                        Leaderboard leaderboard) throws IOException {
         this.socket = socket;
-        reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-        writer = new PrintWriter(socket.getOutputStream(), true);
-        name = loadName();
+        this.executor = executor;
+        this.sessions = sessions;
+        this.leaderboard = leaderboard;
+        closed = new CompletableFuture<>();
+        pendingAnswer = new AtomicReference<>();
+        outbound = new OutboundQueue(OutboundQueue.DEFAULT_CAPACITY, policy);
+        draining = new AtomicBoolean();
+        codec = Codec.JSON;
+        in = new CountingInputStream(socket.getInputStream());
+        reader = new PacketReader(in, codec);
+        writer = new BufferedOutputStream(socket.getOutputStream());
+        handshake();
+        if (spectator) {
+            // a spectator that can't keep up is dropped, the match doesn't wait for it
+            outbound.setPolicy(SlowConsumerPolicy.DISCONNECT);
+        }
     }
 
+    @Override
     public void setTimeOut(long timeout) {
+        this.timeout = timeout;
         try {
             socket.setSoTimeout((int) timeout);
         } catch (SocketException e) {
-            Logger.log("failed to set SO timeout at " + socket);
+            Logger.warn("failed to set SO timeout at ", socket);
         }
     }
 
     /**
-     * waits for the client to send a name and sends back a response confirming the connection
+     * waits for the client to send a name, resume or spectate packet and sends back a response confirming the
+     * connection with the token of its session. if the client asked for another protocol that the server
+     * knows, the response accepts it and the rest of the connection uses it.
+     * a leaderboard packet gets the response and the leaderboard in JSON, and the connection is only a query.
      *
-     * @return the name sent by the client
      * @throws IOException indicates failing to read a packet from the client or receiving an invalid packet
      */
-    private String loadName() throws IOException {
-        String name;
-        boolean successful = false;
+    private void handshake() throws IOException {
+        Events.Handshake event = new Events.Handshake();
+        event.begin();
+        Packet response = Packet.response(false);
         try {
-            String packet = reader.readLine();
-            JSONObject packetJson = new JSONObject(packet);
-            name = getNameFromPacket(packetJson);
-            successful = true;
+            Packet packet = reader.read(new Packet());
+            readHandshake(packet);
+            response.setFlag(true).setToken(token);
+            Codec requested = Codec.forName(packet.getProtocol());
+            if (requested != null && query == null) {
+                response.setProtocol(requested.getName());
+            }
         } catch (IOException e) {
-            Logger.log("couldn't read player name from " + socket);
+            Logger.warn("couldn't read player name from ", socket);
             throw e;
         } finally {
-            sendResponse(successful);
+            try {
+                write(Frame.of(response));
+                if (query != null && response.getFlag()) {
+                    write(Frame.of(Packet.message(leaderboard.describe(query.getNumber(), query.getText()))));
+                }
+                writer.flush();
+                Logger.debug("sent response to ", socket);
+            } catch (IOException e) {
+                Logger.debug("failed to send packet to ", socket);
+            }
+            event.end();
+            if (event.shouldCommit()) {
+                event.address = socket.getRemoteSocketAddress().toString();
+                event.name = name;
+                event.protocol = response.getProtocol() == null ? Codec.JSON.getName() : response.getProtocol();
+                event.successful = response.getFlag();
+                event.commit();
+            }
+        }
+        Codec negotiated = Codec.forName(response.getProtocol());
+        if (negotiated != null) {
+            codec = negotiated;
+            reader.setCodec(negotiated);
         }
-        return name;
     }
 
-    private String getNameFromPacket(JSONObject packetJson) throws IOException {
-        String name;
-        String type = packetJson.getString("type");
-        if (type.equals("name")) {
-            name = packetJson.getString("name");
-            Logger.log("received name from" + socket);
+    private void readHandshake(Packet packet) throws IOException {
+        if (packet.getType() == PacketType.NAME) {
+            if (!Player.isValidName(packet.getText())) {
+                Logger.warn("received invalid name from ", socket);
+                throw new ProtocolException("invalid name");
+            }
+            name = packet.getText();
+            queue = packet.getQueue() == null ? MatchMaker.DEFAULT_QUEUE : packet.getQueue();
+            token = SessionRegistry.newToken();
+            Logger.debug("received name from ", socket);
+        } else if (packet.getType() == PacketType.RESUME) {
+            if (sessions == null || !sessions.canResume(packet.getToken())) {
+                Logger.warn("can't resume session for ", socket);
+                throw new ProtocolException("unknown session");
+            }
+            token = packet.getToken();
+            resumed = true;
+            Logger.debug("received resume from ", socket);
+        } else if (packet.getType() == PacketType.SPECTATE) {
+            spectator = true;
+            spectatedMatch = packet.getNumber();
+            Logger.debug("received spectate from ", socket);
+        } else if (packet.getType() == PacketType.LEADERBOARD && leaderboard != null
+                && (packet.getText() == null || Player.isValidName(packet.getText()))) {
+            query = packet;
+            Logger.debug("received leaderboard query from ", socket);
         } else {
-            Logger.log(INVALID_PACKET + socket);
-            throw new IOException();
+            Logger.warn(INVALID_PACKET, socket);
+            throw new ProtocolException("expected a name packet");
         }
+    }
+
+    @Override
+    public String getName() {
         return name;
     }
 
-    private void sendResponse(boolean successful) {
-        JSONObject response = new JSONObject();
-        response.put("type", "response");
-        response.put("successful", successful);
-        writer.println(response);
-        Logger.log("sent response to " + socket);
+    @Override
+    public String getQueue() {
+        return queue;
     }
 
-    public String getName() {
-        return name;
+    @Override
+    public String getToken() {
+        return token;
+    }
+
+    @Override
+    public boolean isResumed() {
+        return resumed;
+    }
+
+    @Override
+    public boolean isSpectator() {
+        return spectator;
+    }
+
+    @Override
+    public int getSpectatedMatch() {
+        return spectatedMatch;
+    }
+
+    /**
+     * @return true if the client only asked for the leaderboard, which was already sent with the response
+     */
+    public boolean isQuery() {
+        return query != null;
+    }
+
+    @Override
+    public void send(Frame frame) {
+        enqueue(frame);
     }
 
-    public void sendMessage(String message) {
-        JSONObject jsonObject = new JSONObject();
-        jsonObject.put("type", "message");
-        jsonObject.put("content", message);
-        writer.println(jsonObject);
-        writer.flush();
-        Logger.log("sent message to" + socket);
+    /**
+     * starts the thread that reads everything the client sends after the handshake until the connection
+     * closes. it's the only reader of the socket, so an answer always goes to the question that is asked
+     * when it arrives.
+     */
+    public void startReading() {
+        executor.execute(this::readAnswers);
     }
 
     /**
-     * sends a question to the client and waits for answer. if request times out it returns -1.
+     * queues a question for the client. the answer is completed by the reading thread, and the answer to the
+     * previous question is completed with NO_ANSWER if it didn't come yet. the question is queued before returning
+     * so nothing sent afterwards can overtake it.
      *
-     * @param question the question to be sent to client
-     * @return answers sent by the client
+     * @param question the question packet to be sent to client
+     * @return a future that completes with the answer sent by the client
      */
-    public int sendQuestion(String question) {
-        JSONObject questionJson = new JSONObject();
-        questionJson.put("type", "question");
-        questionJson.put("question", question);
-        writer.println(questionJson);
-        writer.flush();
-        Logger.log("sent question to" + socket);
-        int answer = -1;
-        try {
-            String packet = reader.readLine();
-            JSONObject answerJson = new JSONObject(packet);
-            String type = answerJson.getString("type");
-            if (type.equals("answer")) {
-                answer = answerJson.getInt("answer");
-                Logger.log("received answer from " + socket);
-            } else {
-                Logger.log(INVALID_PACKET + socket);
-            }
-        } catch (IOException e) {
-            Logger.log("didn't receive an answer from " + socket);
+    @Override
+    public CompletableFuture<Integer> sendQuestion(Frame question) {
+        CompletableFuture<Integer> answer = new CompletableFuture<>();
+        askedAt = System.nanoTime();
+        CompletableFuture<Integer> previous = pendingAnswer.getAndSet(answer);
+        if (previous != null) {
+            previous.complete(NO_ANSWER);
         }
+        if (socket.isClosed()) {
+            completeAnswer(NO_ANSWER);
+        }
+        enqueue(question);
         return answer;
     }
+
+    /**
+     * reads packets until the connection closes and completes the pending question with each answer.
+     * if the question times out its answer is TIMED_OUT.
+     */
+    private void readAnswers() {
+        Packet packet = new Packet();
+        while (!socket.isClosed()) {
+            try {
+                reader.read(packet);
+                if (packet.getType() == PacketType.ANSWER) {
+                    Logger.debug("received answer from ", socket);
+                    completeAnswer(packet.getNumber());
+                } else {
+                    Logger.warn(INVALID_PACKET, socket);
+                }
+            } catch (ProtocolException e) {
+                Logger.warn(INVALID_PACKET, socket);
+                if (codec != Codec.JSON) {
+                    close(); // can't find the start of the next binary frame
+                }
+            } catch (SocketTimeoutException e) {
+                if (System.nanoTime() - askedAt >= TimeUnit.MILLISECONDS.toNanos(timeout)) {
+                    Logger.debug("didn't receive an answer from ", socket);
+                    completeAnswer(TIMED_OUT);
+                }
+            } catch (IOException e) {
+                if (!socket.isClosed()) {
+                    Logger.log("lost connection with " + socket);
+                }
+                close();
+            }
+        }
+        completeAnswer(NO_ANSWER);
+    }
+
+    /**
+     * completes the pending question if there is one
+     */
+    private void completeAnswer(int answer) {
+        CompletableFuture<Integer> pending = pendingAnswer.getAndSet(null);
+        if (pending != null) {
+            pending.complete(answer);
+        }
+    }
+
+    @Override
+    public void close() {
+        outbound.clear();
+        completeAnswer(NO_ANSWER);
+        synchronized (closed) {
+            if (socket.isClosed()) {
+                closed.complete(null);
+                return;
+            }
+            try {
+                socket.close();
+            } catch (IOException e) {
+                Logger.warn("failed to close ", socket);
+            }
+        }
+        Metrics.connectionClosed();
+        Logger.debug("closed after " + in.count + " bytes in and " + bytesOut + " bytes out: ", socket);
+        closed.complete(null);
+    }
+
+    /**
+     * starts draining if nobody is, the last drain closes the socket when the queue is empty
+     */
+    @Override
+    public void closeWhenSent() {
+        closeWhenSent = true;
+        if (draining.compareAndSet(false, true)) {
+            executor.execute(this::drain);
+        }
+    }
+
+    @Override
+    public void onClose(Runnable listener) {
+        closed.thenRun(listener);
+    }
+
+    /**
+     * adds a frame to the outbound queue and starts draining it if nobody is. the caller never
+     * waits for the client to read.
+     */
+    private void enqueue(Frame frame) {
+        if (socket.isClosed()) {
+            return;
+        }
+        if (!outbound.offer(frame)) {
+            Logger.warn("disconnecting slow client at ", socket);
+            close();
+            return;
+        }
+        if (draining.compareAndSet(false, true)) {
+            executor.execute(this::drain);
+        }
+    }
+
+    /**
+     * writes the queued frames until the queue is empty. only one thread drains at a time and
+     * the frames are flushed together when the queue runs out.
+     */
+    private void drain() {
+        do {
+            try {
+                Frame frame;
+                while ((frame = outbound.poll()) != null) {
+                    Events.FrameWrite event = new Events.FrameWrite();
+                    event.begin();
+                    write(frame);
+                    Logger.debug("sent packet to ", socket);
+                    if (outbound.isEmpty()) {
+                        writer.flush();
+                    }
+                    commit(event, frame);
+                }
+            } catch (IOException e) {
+                Logger.debug("failed to send packet to ", socket);
+                close();
+            }
+            draining.set(false);
+        } while (!outbound.isEmpty() && draining.compareAndSet(false, true));
+        // if another thread started draining in the meantime, it does this check when it's done
+        if (closeWhenSent && outbound.isEmpty() && draining.compareAndSet(false, true)) {
+            close();
+        }
+    }
+
+    /**
+     * writes a frame using the protocol of the connection
+     */
+    private void write(Frame frame) throws IOException {
+        frame.writeTo(writer, codec);
+        int size = frame.size(codec);
+        bytesOut += size; // only one thread writes at a time
+        Metrics.bytesOut(size);
+    }
+
+    private void commit(Events.FrameWrite event, Frame frame) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.address = socket.getRemoteSocketAddress().toString();
+            event.type = frame.getType().name();
+            event.size = frame.size(codec);
+            event.commit();
+        }
+    }
+
+    public long getBytesIn() {
+        return in.count;
+    }
+
+    public long getBytesOut() {
+        return bytesOut;
+    }
+
+    /**
+     * counts the bytes read from the client
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        private volatile long count;
+
+        private CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                added(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                added(read);
+            }
+            return read;
+        }
+
+        private void added(int read) {
+            count += read; // only one thread reads at a time
+            Metrics.bytesIn(read);
+        }
+    }
 }
@@ -1,15 +1,26 @@
 package server;
 
 import org.json.JSONArray;
+import org.json.JSONException;
 import org.json.JSONObject;
+import protocol.Frame;
+import protocol.Packet;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class Question {
-    private static int idCounter = 0;
+    public static final String DEFAULT_CATEGORY = "General";
+    private static final AtomicInteger idCounter = new AtomicInteger();
     private final transient int id;
     private String question;
     private String[] choices;
     private int correctAnswer;
     private int points;
+    private String category;
+    private Difficulty difficulty;
+    private volatile Frame frame;
+    private volatile Frame messageFrame;
 
 
     public Question() {
@@ -17,10 +28,17 @@ public class Question {
     }
 
     public Question(String question, String[] choices, int correctAnswer, int points) {
+        this(question, choices, correctAnswer, points, DEFAULT_CATEGORY, Difficulty.MEDIUM);
+    }
+
+    public Question(String question, String[] choices, int correctAnswer, int points, String category,
+                    Difficulty difficulty) {
         this.question = question;
         this.choices = choices;
         this.correctAnswer = correctAnswer;
         this.points = points;
+        this.category = category;
+        this.difficulty = difficulty;
         id = nextId();
     }
 
@@ -28,6 +46,14 @@ public class Question {
         String question = questionJson.getString("question");
         int correctAnswer = questionJson.getInt("correct");
         int points = questionJson.getInt("points");
+        if (points < 0) {
+            throw new JSONException("negative points: " + points);
+        }
+        String category = questionJson.optString("category", DEFAULT_CATEGORY);
+        Difficulty difficulty = Difficulty.fromName(questionJson.optString("difficulty", null));
+        if (difficulty == null) {
+            difficulty = Difficulty.MEDIUM;
+        }
 
         JSONArray choicesJson = questionJson.getJSONArray("choices");
         String[] choices = new String[choicesJson.length()];
@@ -35,25 +61,41 @@ public class Question {
             choices[i] = (String) choicesJson.get(i);
         }
 
-        return new Question(question, choices, correctAnswer, points);
+        return new Question(question, choices, correctAnswer, points, category, difficulty);
     }
 
     private static int nextId() {
-        int id = idCounter;
-        idCounter += 1;
-        return id;
+        // questions of a mapped bank are created by many games at once
+        return idCounter.getAndIncrement();
     }
 
     public int getId() {
         return id;
     }
 
+    /**
+     * the id only means something inside one server process, the key is the same for the same question text
+     * in every process and every bank, so it can be kept in the results journal
+     *
+     * @return 64 bit FNV-1a hash of the UTF-8 bytes of the question text
+     */
+    public long getKey() {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : question.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
     public String getQuestion() {
         return question;
     }
 
     public void setQuestion(String question) {
         this.question = question;
+        frame = null;
+        messageFrame = null;
     }
 
     public String[] getChoices() {
@@ -62,6 +104,8 @@ public class Question {
 
     public void setChoices(String[] choices) {
         this.choices = choices;
+        frame = null;
+        messageFrame = null;
     }
 
     public int getCorrectAnswer() {
@@ -78,15 +122,54 @@ public class Question {
 
     public void setPoints(int points) {
         this.points = points;
+        frame = null;
+        messageFrame = null;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public void setCategory(String category) {
+        this.category = category;
+    }
+
+    public Difficulty getDifficulty() {
+        return difficulty;
+    }
+
+    public void setDifficulty(Difficulty difficulty) {
+        this.difficulty = difficulty;
+    }
+
+    /**
+     * @return the question packet, encoded once and sent as it is to every player
+     */
+    public Frame getFrame() {
+        if (frame == null) {
+            frame = Frame.of(Packet.question(toString()));
+        }
+        return frame;
+    }
+
+    /**
+     * @return the question as a message packet for spectators, who see it but can't answer
+     */
+    public Frame getMessageFrame() {
+        if (messageFrame == null) {
+            messageFrame = Frame.of(Packet.message(toString()));
+        }
+        return messageFrame;
     }
 
     @Override
     public String toString() {
-        String s = question + " (" + points + " points)\n";
+        StringBuilder s = new StringBuilder();
+        s.append(question).append(" (").append(points).append(" points)\n");
         for (String choice : choices) {
-            s += choice + "\n";
+            s.append(choice).append('\n');
         }
-        return s;
+        return s.toString();
     }
 
     @Override
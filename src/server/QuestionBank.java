@@ -0,0 +1,57 @@
+package server;
+
+import java.nio.IntBuffer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * questions the server can ask, looked up by their position in the bank. a bank also has precomputed
+ * facets: the positions of the questions of every category, every difficulty and every pair of both,
+ * so a filtered set can be picked without going through the whole bank.
+ */
+public interface QuestionBank {
+    int size();
+
+    /**
+     * @param index position of the question, from 0 to size() - 1
+     */
+    Question get(int index);
+
+    /**
+     * @param category   category of the questions or null for any
+     * @param difficulty difficulty of the questions or null for any
+     * @return positions of the matching questions or null if there are none. not used for the whole bank.
+     */
+    IntBuffer getFacet(String category, Difficulty difficulty);
+
+    static String facetKey(String category, Difficulty difficulty) {
+        return (category == null ? "*" : category) + "/" + (difficulty == null ? "*" : difficulty.name());
+    }
+
+    /**
+     * @return the positions of the questions in every facet, keyed by facetKey()
+     */
+    static Map<String, int[]> buildFacets(List<Question> questions) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (Question question : questions) {
+            for (String key : facetKeys(question)) {
+                counts.merge(key, 1, Integer::sum);
+            }
+        }
+        Map<String, int[]> facets = new HashMap<>();
+        Map<String, Integer> filled = new HashMap<>();
+        for (int i = 0; i < questions.size(); i++) {
+            for (String key : facetKeys(questions.get(i))) {
+                int[] positions = facets.computeIfAbsent(key, k -> new int[counts.get(k)]);
+                positions[filled.merge(key, 1, Integer::sum) - 1] = i;
+            }
+        }
+        return facets;
+    }
+
+    private static String[] facetKeys(Question question) {
+        return new String[]{facetKey(question.getCategory(), null), facetKey(null, question.getDifficulty()),
+                facetKey(question.getCategory(), question.getDifficulty())};
+    }
+}
@@ -0,0 +1,90 @@
+package server;
+
+import java.nio.IntBuffer;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * samples questions from a bank. any number of threads can sample at once, nothing is locked or
+ * changed while sampling, so matches that start together never wait for each other.
+ */
+public class QuestionIndex {
+    private static final int SMALL_SAMPLE = 16; // below this a linear search beats hashing
+    private final QuestionBank bank;
+
+    public QuestionIndex(QuestionBank bank) {
+        this.bank = bank;
+    }
+
+    public int size() {
+        return bank.size();
+    }
+
+    /**
+     * picks distinct questions in a random order with Floyd's algorithm, in time proportional to the
+     * number of questions and not to the size of the index
+     *
+     * @param count number of questions, at most the size of the index
+     */
+    public Question[] sample(int count) {
+        return sample(count, bank.size(), null);
+    }
+
+    /**
+     * picks distinct questions of a category and difficulty from the precomputed facets of the bank,
+     * in time proportional to the number of questions
+     *
+     * @param category   category of the questions or null for any
+     * @param difficulty difficulty of the questions or null for any
+     * @return at most count questions, fewer if there aren't enough matching questions
+     */
+    public Question[] sample(int count, String category, Difficulty difficulty) {
+        if (category == null && difficulty == null) {
+            return sample(count);
+        }
+        IntBuffer facet = bank.getFacet(category, difficulty);
+        if (facet == null) {
+            return new Question[0];
+        }
+        return sample(count, facet.limit(), facet);
+    }
+
+    /**
+     * @param n         number of questions to pick from
+     * @param positions positions of the questions in the bank or null for all of the bank
+     */
+    private Question[] sample(int count, int n, IntBuffer positions) {
+        count = Math.min(count, n);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int[] picked = new int[count];
+        Set<Integer> pickedSet = count > SMALL_SAMPLE ? new HashSet<>() : null;
+        for (int i = 0, j = n - count; j < n; i++, j++) {
+            int candidate = random.nextInt(j + 1);
+            if (pickedSet != null ? !pickedSet.add(candidate) : contains(picked, i, candidate)) {
+                candidate = j; // j can't have been picked yet
+                if (pickedSet != null) {
+                    pickedSet.add(j);
+                }
+            }
+            picked[i] = candidate;
+        }
+        // Floyd's algorithm picks a uniform set but not a uniform order
+        Question[] sample = new Question[count];
+        for (int i = 0; i < count; i++) {
+            int swap = random.nextInt(i + 1);
+            sample[i] = sample[swap];
+            sample[swap] = bank.get(positions == null ? picked[i] : positions.get(picked[i]));
+        }
+        return sample;
+    }
+
+    private static boolean contains(int[] values, int length, int value) {
+        for (int i = 0; i < length; i++) {
+            if (values[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
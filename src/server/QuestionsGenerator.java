@@ -5,17 +5,119 @@ import org.json.JSONObject;
 
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 
+/**
+ * picks the questions of every game from an immutable snapshot of the question bank. when the bank is
+ * reloaded a new snapshot takes the place of the old one, and games that already started keep the
+ * questions they got.
+ */
 public class QuestionsGenerator {
+    private static final long RELOAD_DELAY = 200; // milliseconds to let the bank file be written completely
     private final String QUESTIONS_PATH = "resources/questions.json";
-    private final ArrayList<Question> questions;
+    private final String BANK_PATH = "resources/questions.bank";
+    private final AtomicReference<QuestionIndex> questions;
 
     public QuestionsGenerator() {
-        questions = loadQuestions();
+        questions = new AtomicReference<>(new QuestionIndex(loadBank()));
+    }
+
+    /**
+     * @param bank questions to pick from instead of the files in resources
+     */
+    public QuestionsGenerator(QuestionBank bank) {
+        questions = new AtomicReference<>(new QuestionIndex(bank));
+    }
+
+    /**
+     * starts a background thread that reloads the questions when the bank or the JSON file changes
+     */
+    public void watch() {
+        Thread watcher = new Thread(this::watchFiles, "questions-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    private void watchFiles() {
+        Path directory = Paths.get(QUESTIONS_PATH).toAbsolutePath().getParent();
+        Path questionsFile = Paths.get(QUESTIONS_PATH).getFileName();
+        Path bankFile = Paths.get(BANK_PATH).getFileName();
+        try (WatchService watchService = directory.getFileSystem().newWatchService()) {
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+            while (true) {
+                WatchKey key = watchService.take();
+                Thread.sleep(RELOAD_DELAY);
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    changed |= questionsFile.equals(event.context()) || bankFile.equals(event.context());
+                }
+                key.reset();
+                if (changed) {
+                    reload();
+                }
+            }
+        } catch (IOException e) {
+            Logger.warn("stopped watching " + directory + " for question changes");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            Logger.debug("stopped watching " + directory + " for question changes");
+        }
+    }
+
+    /**
+     * loads the questions again and swaps them in. if they can't be loaded the old questions are kept.
+     */
+    public void reload() {
+        QuestionBank bank;
+        try {
+            bank = loadBank();
+        } catch (RuntimeException e) {
+            Logger.warn("couldn't reload questions: " + e.getMessage());
+            return;
+        }
+        if (bank.size() == 0) {
+            Logger.warn("kept the old questions because the new ones are empty");
+            return;
+        }
+        questions.set(new QuestionIndex(bank));
+        Logger.log("reloaded " + bank.size() + " questions");
+    }
+
+    /**
+     * maps the compiled bank if there is one and it isn't older than the JSON file, or loads the questions
+     * from JSON. a JSON file that was edited after the bank was compiled wins until the bank is compiled again.
+     */
+    private QuestionBank loadBank() {
+        Path path = Paths.get(BANK_PATH);
+        Path json = Paths.get(QUESTIONS_PATH);
+        if (Files.exists(path)) {
+            try {
+                if (Files.exists(json)
+                        && Files.getLastModifiedTime(json).compareTo(Files.getLastModifiedTime(path)) > 0) {
+                    Logger.log(QUESTIONS_PATH + " is newer than " + BANK_PATH + ", loading the JSON");
+                } else {
+                    MappedQuestionBank bank = MappedQuestionBank.open(path);
+                    Logger.log("mapped " + bank.size() + " questions from " + BANK_PATH);
+                    return bank;
+                }
+            } catch (IOException e) {
+                Logger.warn("couldn't map question bank " + BANK_PATH + ": " + e.getMessage());
+            }
+        }
+        MemoryQuestionBank bank = new MemoryQuestionBank(loadQuestions());
+        Logger.log("loaded " + bank.size() + " questions from " + QUESTIONS_PATH);
+        return bank;
     }
 
     private ArrayList<Question> loadQuestions() {
@@ -35,17 +137,46 @@ public class QuestionsGenerator {
             String mapString = new String(Files.readAllBytes(Paths.get(path)));
             return new JSONArray(mapString);
         } catch (IOException e) {
-            Logger.log("couldn't read questions JSON from" + path);
+            Logger.error("couldn't read questions JSON from " + path);
         }
         return new JSONArray();
     }
 
-    public synchronized Question[] getRandomQuestionsSet(int questionsCount) {
-        if (questionsCount > questions.size()) {
-            questionsCount = questions.size();
+    /**
+     * picks random distinct questions without locking, many games can ask for questions at the same time
+     */
+    public Question[] getRandomQuestionsSet(int questionsCount) {
+        return questions.get().sample(questionsCount);
+    }
+
+    /**
+     * picks random distinct questions of a category and difficulty
+     *
+     * @param category   category of the questions or null for any
+     * @param difficulty difficulty of the questions or null for any
+     * @return at most questionsCount questions, fewer if there aren't enough matching questions
+     */
+    public Question[] getRandomQuestionsSet(int questionsCount, String category, Difficulty difficulty) {
+        return questions.get().sample(questionsCount, category, difficulty);
+    }
+
+    /**
+     * picks a set that mixes difficulties, like 3 easy and 2 hard questions about animals. the questions
+     * are ordered from the easiest to the hardest.
+     *
+     * @param category category of the questions or null for any
+     * @param counts   number of questions of each difficulty
+     */
+    public Question[] getRandomQuestionsSet(String category, Map<Difficulty, Integer> counts) {
+        // the same snapshot for every difficulty even if the bank is reloaded meanwhile
+        QuestionIndex index = questions.get();
+        List<Question> set = new ArrayList<>();
+        for (Difficulty difficulty : Difficulty.values()) {
+            int count = counts.getOrDefault(difficulty, 0);
+            if (count > 0) {
+                set.addAll(Arrays.asList(index.sample(count, category, difficulty)));
+            }
         }
-        Collections.shuffle(questions);
-        List<Question> list = questions.subList(0, questionsCount);
-        return list.toArray(new Question[questionsCount]);
+        return set.toArray(new Question[0]);
     }
 }
@@ -0,0 +1,283 @@
+package server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * an append-only journal of match results. games only put their result in a queue, and a single appender
+ * thread writes whatever is waiting as one batch and forces it to the disk with one fsync, so many games
+ * finishing together share the cost of a sync. if the queue is full, results are dropped instead of making
+ * a game wait.
+ * <p>
+ * the journal is a directory of segment files named results-NNNNNN.journal. a new segment is started when
+ * the server starts and when the current one grows past the segment size. a segment starts with a magic
+ * int and a version int, then every record is its length and the CRC32 of its bytes as ints followed by
+ * the bytes of a MatchResult. a record that was only partly written when the server stopped fails its
+ * check and ends the segment.
+ * <p>
+ * if a batch fails to be written, the failure is logged and counted in the metrics, the segment is closed
+ * and the batch is written again to a new segment after a pause, so the torn record ends the old segment
+ * and nothing that was committed is lost. results keep queueing meanwhile and are dropped once the queue
+ * is full.
+ */
+public class ResultsJournal {
+    static final int MAGIC = 0x524A4E4C; // "RJNL"
+    static final int VERSION = 2;
+    static final String PREFIX = "results-";
+    static final String SUFFIX = ".journal";
+    public static final long DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+    private static final int QUEUE_CAPACITY = 65536;
+    private static final int MAX_BATCH = 1024; // records
+    private static final long IDLE_WAIT = 100; // milliseconds
+    private static final long RETRY_WAIT = 1000; // milliseconds
+    private static final int RETRIES_ON_CLOSE = 3;
+    private final Path directory;
+    private final long segmentSize;
+    private final BlockingQueue<MatchResult> queue;
+    private final LongAdder dropped;
+    private final Thread appender;
+    private volatile boolean running;
+    private volatile long committed;
+    private volatile long syncs;
+    private FileChannel segment;
+    private int segmentIndex;
+    private volatile int firstSegmentIndex; // of this start of the server
+
+    /**
+     * @param directory   where the segments are kept
+     * @param segmentSize size in bytes after which a new segment is started
+     */
+    public ResultsJournal(Path directory, long segmentSize) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        dropped = new LongAdder();
+        appender = new Thread(this::appendLoop, "results-appender");
+        appender.setDaemon(true);
+    }
+
+    /**
+     * opens a new segment after the existing ones and starts the appender
+     */
+    public void start() throws IOException {
+        Files.createDirectories(directory);
+        segmentIndex = lastSegmentIndex(directory);
+        openNextSegment();
+        firstSegmentIndex = segmentIndex;
+        running = true;
+        appender.start();
+    }
+
+    /**
+     * queues a result to be written. never blocks.
+     *
+     * @return false if the queue was full and the result was dropped
+     */
+    public boolean append(MatchResult result) {
+        if (queue.offer(result)) {
+            return true;
+        }
+        dropped.increment();
+        return false;
+    }
+
+    /**
+     * game ids start over on every start of the server, but every start opens a new segment
+     *
+     * @param gameId id of a game of this process
+     * @return id of the match that no other start of the server uses in this journal: the index of the
+     * first segment of this start in the high 32 bits and the game id in the low ones
+     */
+    public long matchId(int gameId) {
+        return (long) firstSegmentIndex << 32 | (gameId & 0xFFFFFFFFL);
+    }
+
+    /**
+     * writes what is still queued and stops the appender
+     */
+    public void close() {
+        // not interrupted because an interrupt closes the FileChannel in the middle of a write
+        running = false;
+        try {
+            appender.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void appendLoop() {
+        List<MatchResult> batch = new ArrayList<>(MAX_BATCH);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        int failures = 0;
+        while (running || !queue.isEmpty() || !batch.isEmpty()) {
+            if (batch.isEmpty()) {
+                MatchResult first;
+                try {
+                    first = queue.poll(IDLE_WAIT, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    continue;
+                }
+                if (first == null) {
+                    continue;
+                }
+                // everything that arrived while the last batch was syncing goes in this one
+                batch.add(first);
+                queue.drainTo(batch, MAX_BATCH - 1);
+            }
+            try {
+                if (segment == null) {
+                    openNextSegment();
+                }
+                write(batch, bytes);
+                committed += batch.size();
+                batch.clear();
+                failures = 0;
+            } catch (IOException e) {
+                failures++;
+                Metrics.journalFailed();
+                Logger.error("failed to write the results journal, try " + failures + ": " + e.getMessage());
+                closeSegment(); // the next try starts a new segment
+                if (!running && failures >= RETRIES_ON_CLOSE) {
+                    Logger.error("dropped " + batch.size() + " results that couldn't be written");
+                    dropped.add(batch.size());
+                    batch.clear();
+                    continue;
+                }
+                pause();
+            }
+        }
+        closeSegment();
+    }
+
+    private void pause() {
+        try {
+            Thread.sleep(RETRY_WAIT);
+        } catch (InterruptedException ignored) {
+            // only close stops the appender
+        }
+    }
+
+    /**
+     * writes a batch with one write and one fsync, then closes the segment if it's full so the next batch
+     * starts a new one
+     */
+    private void write(List<MatchResult> batch, ByteArrayOutputStream bytes) throws IOException {
+        bytes.reset();
+        DataOutputStream out = new DataOutputStream(bytes);
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        CRC32 crc = new CRC32();
+        for (MatchResult result : batch) {
+            record.reset();
+            try {
+                result.writeTo(new DataOutputStream(record));
+            } catch (IOException e) {
+                // can't be fixed by trying again, like a name that is too long
+                Logger.error("dropped a result that can't be encoded: " + e.getMessage());
+                dropped.increment();
+                continue;
+            }
+            crc.reset();
+            crc.update(record.toByteArray());
+            out.writeInt(record.size());
+            out.writeInt((int) crc.getValue());
+            record.writeTo(out);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        while (buffer.hasRemaining()) {
+            segment.write(buffer);
+        }
+        segment.force(false);
+        syncs++;
+        if (segment.position() >= segmentSize) {
+            closeSegment();
+        }
+    }
+
+    private void openNextSegment() throws IOException {
+        segmentIndex++;
+        Path path = segmentPath(directory, segmentIndex);
+        segment = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(8).putInt(MAGIC).putInt(VERSION).flip();
+        while (header.hasRemaining()) {
+            segment.write(header);
+        }
+        Logger.log("started results segment " + path);
+    }
+
+    private void closeSegment() {
+        if (segment == null) {
+            return;
+        }
+        try {
+            segment.close();
+        } catch (IOException e) {
+            Logger.warn("failed to close results segment " + segmentIndex);
+        }
+        segment = null;
+    }
+
+    static Path segmentPath(Path directory, int index) {
+        return directory.resolve(String.format("%s%06d%s", PREFIX, index, SUFFIX));
+    }
+
+    /**
+     * @return the segments of a journal in the order they were written
+     */
+    static List<Path> segments(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(ResultsJournal::isSegment).sorted().toList();
+        }
+    }
+
+    private static int lastSegmentIndex(Path directory) throws IOException {
+        List<Path> segments = segments(directory);
+        if (segments.isEmpty()) {
+            return 0;
+        }
+        String name = segments.get(segments.size() - 1).getFileName().toString();
+        return Integer.parseInt(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    private static boolean isSegment(Path path) {
+        String name = path.getFileName().toString();
+        return name.matches(PREFIX + "\\d{6}" + SUFFIX.replace(".", "\\."));
+    }
+
+    /**
+     * @return number of results written and synced to the disk
+     */
+    public long getCommittedCount() {
+        return committed;
+    }
+
+    /**
+     * @return number of fsyncs, each one commits a whole batch
+     */
+    public long getSyncCount() {
+        return syncs;
+    }
+
+    /**
+     * @return number of results dropped because the queue was full or they couldn't be written
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+}
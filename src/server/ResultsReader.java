@@ -0,0 +1,79 @@
+package server;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * streams the results back out of a ResultsJournal, segment by segment, in the order they were written.
+ * running it prints every match of a journal directory, one per line.
+ */
+public class ResultsReader {
+    private static final int MAX_RECORD_SIZE = 16 * 1024 * 1024;
+
+    public static void main(String[] args) throws IOException {
+        Path directory = Paths.get(args.length > 0 ? args[0] : "results");
+        long count = read(directory, System.out::println);
+        System.out.println(count + " matches");
+    }
+
+    /**
+     * reads every result of the journal. a segment whose last record was only partly written is read up
+     * to that record.
+     *
+     * @param directory directory of the journal
+     * @param consumer  gets every result
+     * @return number of results read
+     */
+    public static long read(Path directory, Consumer<MatchResult> consumer) throws IOException {
+        long count = 0;
+        for (Path segment : ResultsJournal.segments(directory)) {
+            count += readSegment(segment, consumer);
+        }
+        return count;
+    }
+
+    private static long readSegment(Path segment, Consumer<MatchResult> consumer) throws IOException {
+        long count = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(segment)))) {
+            if (in.readInt() != ResultsJournal.MAGIC || in.readInt() != ResultsJournal.VERSION) {
+                Logger.warn("not a results segment: ", segment);
+                return 0;
+            }
+            CRC32 crc = new CRC32();
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break; // the segment ends after a whole record
+                }
+                int checksum = in.readInt();
+                if (length < 0 || length > MAX_RECORD_SIZE) {
+                    Logger.warn("invalid record length in ", segment);
+                    break;
+                }
+                byte[] record = new byte[length];
+                in.readFully(record);
+                crc.reset();
+                crc.update(record);
+                if ((int) crc.getValue() != checksum) {
+                    Logger.warn("corrupt record in ", segment);
+                    break;
+                }
+                consumer.accept(MatchResult.readFrom(new DataInputStream(new ByteArrayInputStream(record))));
+                count++;
+            }
+        } catch (EOFException e) {
+            Logger.warn("partly written record at the end of ", segment);
+        }
+        return count;
+    }
+}
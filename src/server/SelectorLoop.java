@@ -0,0 +1,108 @@
+package server;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * a thread that owns a selector and handles every channel registered with it.
+ * other threads never touch the channels directly, they hand tasks to the loop using execute().
+ * a handler or task that throws is logged and doesn't stop the loop or the other channels on it.
+ */
+public class SelectorLoop extends Thread {
+    private final Selector selector;
+    private final Queue<Runnable> tasks;
+
+    public SelectorLoop(String name) throws IOException {
+        super(name);
+        selector = Selector.open();
+        tasks = new ConcurrentLinkedQueue<>();
+    }
+
+    /**
+     * something that wants to be told when its channel is ready
+     */
+    public interface Handler {
+        void onReady(SelectionKey key) throws IOException;
+
+        void onError(IOException e);
+    }
+
+    /**
+     * runs a task on the loop thread
+     *
+     * @param task task to run
+     */
+    public void execute(Runnable task) {
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    /**
+     * registers a channel with this loop. must be called from the loop thread.
+     */
+    public SelectionKey register(SelectableChannel channel, int ops, Handler handler) throws IOException {
+        channel.configureBlocking(false);
+        return channel.register(selector, ops, handler);
+    }
+
+    @Override
+    public void run() {
+        while (!isInterrupted()) {
+            try {
+                selector.select();
+            } catch (IOException e) {
+                Logger.error(getName() + " failed to select");
+                break;
+            }
+            handleSelectedKeys();
+            runTasks();
+        }
+    }
+
+    private void handleSelectedKeys() {
+        Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+        while (iterator.hasNext()) {
+            SelectionKey key = iterator.next();
+            iterator.remove();
+            Handler handler = (Handler) key.attachment();
+            try {
+                handler.onReady(key);
+            } catch (IOException e) {
+                handler.onError(e);
+            } catch (CancelledKeyException ignored) {
+                // channel was closed while handling it
+            } catch (RuntimeException e) {
+                Logger.error(getName() + " failed to handle " + key.channel() + ": " + e);
+                fail(key, handler, e);
+            }
+        }
+    }
+
+    /**
+     * drops a channel whose handler threw, its state can't be trusted anymore
+     */
+    private void fail(SelectionKey key, Handler handler, RuntimeException cause) {
+        try {
+            handler.onError(new IOException(cause));
+        } catch (RuntimeException e) {
+            key.cancel();
+        }
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                Logger.error(getName() + " failed to run a task: " + e);
+            }
+        }
+    }
+}
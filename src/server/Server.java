@@ -3,33 +3,174 @@ package server;
 import java.io.IOException;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 class Server {
+    private static final int PORT = 8000;
+    private static final int SELECTOR_LOOPS = Runtime.getRuntime().availableProcessors();
+    private static final int TIMER_THREADS = Runtime.getRuntime().availableProcessors();
+    private static final int TIMER_TICK = 10; // milliseconds
+    private static final int SKILL_GAME_SIZE = 2;
+    private static final long METRICS_PERIOD = 60; // seconds
+    private static final long SESSION_GRACE_PERIOD = 60000; // milliseconds
+    private static final String RESULTS_DIRECTORY = "results";
+    private static final String LEADERBOARD_FILE = "leaderboard.snapshot";
+    private static final long LEADERBOARD_SNAPSHOT_PERIOD = 30000; // milliseconds
+    private final ExecutorService executor;
+    private final TimingWheel timer;
+    private final MatchMaker matchMaker;
+    private final SlowConsumerPolicy policy;
+    private final SessionRegistry sessions;
+    private final Leaderboard leaderboard;
     ClientHandler clientHandler;
 
-    public Server() {
-        MatchMaker matchMaker = new MatchMaker();
-        clientHandler = new ClientHandler(matchMaker);
+    /**
+     * @param mode          kind of threads to use
+     * @param skillMatching match players by rating instead of by queue
+     * @param policy        what to do with clients that read slower than the server writes
+     */
+    public Server(ExecutionMode mode, boolean skillMatching, SlowConsumerPolicy policy) {
+        this.policy = policy;
+        executor = mode.newExecutor("server");
+        // timed tasks never block for long so they share a small pool of platform threads
+        timer = new TimingWheel(TIMER_TICK, Executors.newFixedThreadPool(TIMER_THREADS,
+                ExecutionMode.PLATFORM.newThreadFactory("timer-worker")));
+        timer.start();
+        leaderboard = startLeaderboard(timer);
+        matchMaker = new MatchMaker(timer, startJournal(), leaderboard);
+        Lobby lobby = matchMaker;
+        if (skillMatching) {
+            lobby = new SkillMatchMaker(SKILL_GAME_SIZE, timer, matchMaker::createGame);
+        }
+        sessions = new SessionRegistry(timer, SESSION_GRACE_PERIOD);
+        clientHandler = new ClientHandler(lobby, executor, policy, sessions, leaderboard,
+                matchMaker.getLiveGames());
+        Logger.log("running on " + mode.name().toLowerCase() + " threads");
+    }
+
+    /**
+     * @return the started journal or null if it can't be written, the server runs without it
+     */
+    private static ResultsJournal startJournal() {
+        ResultsJournal journal = new ResultsJournal(Paths.get(RESULTS_DIRECTORY),
+                ResultsJournal.DEFAULT_SEGMENT_SIZE);
+        try {
+            journal.start();
+        } catch (IOException e) {
+            Logger.warn("can't write the results journal in " + RESULTS_DIRECTORY);
+            return null;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(journal::close));
+        return journal;
+    }
+
+    /**
+     * loads the last snapshot of the leaderboard and keeps saving it, also when the server stops
+     */
+    private static Leaderboard startLeaderboard(TimingWheel timer) {
+        Path path = Paths.get(LEADERBOARD_FILE);
+        Leaderboard leaderboard;
+        try {
+            leaderboard = Leaderboard.load(path);
+        } catch (IOException e) {
+            Logger.warn("can't read " + LEADERBOARD_FILE + ", starting with an empty leaderboard");
+            leaderboard = new Leaderboard();
+        }
+        leaderboard.snapshotEvery(timer, path, LEADERBOARD_SNAPSHOT_PERIOD);
+        Leaderboard saved = leaderboard;
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                saved.snapshot(path);
+            } catch (IOException e) {
+                Logger.warn("failed to save the leaderboard to " + path);
+            }
+        }));
+        return leaderboard;
     }
 
     public static void main(String[] args) {
-        Server server = new Server();
-        server.start();
+        Server server = new Server(ExecutionMode.fromArgs(args), Arrays.asList(args).contains("--skill"),
+                SlowConsumerPolicy.fromArgs(args));
+        server.addQueues(args);
+        server.startMetrics(args);
+        if (Arrays.asList(args).contains("--nio")) {
+            server.startNio();
+        } else {
+            server.start();
+        }
+    }
+
+    /**
+     * adds the match queues given as --queue=name,gameSize,minGameSize,fillTimeout
+     */
+    private void addQueues(String[] args) {
+        for (String arg : args) {
+            if (!arg.startsWith("--queue=")) {
+                continue;
+            }
+            String[] parts = arg.substring("--queue=".length()).split(",");
+            try {
+                matchMaker.addQueue(parts[0], Integer.parseInt(parts[1]), Integer.parseInt(parts[2]),
+                        Long.parseLong(parts[3]));
+            } catch (IllegalArgumentException e) {
+                Logger.warn("invalid queue " + arg + ": " + e.getMessage());
+            } catch (RuntimeException e) {
+                Logger.warn("invalid queue " + arg);
+            }
+        }
+    }
+
+    /**
+     * registers the metrics MBean and logs the metrics every --metrics=seconds. 0 turns the log off.
+     */
+    private void startMetrics(String[] args) {
+        Metrics.register();
+        long period = METRICS_PERIOD;
+        for (String arg : args) {
+            if (arg.startsWith("--metrics=")) {
+                try {
+                    period = Long.parseLong(arg.substring("--metrics=".length()));
+                } catch (NumberFormatException e) {
+                    Logger.warn("invalid metrics period " + arg);
+                }
+            }
+        }
+        if (period > 0) {
+            Metrics.dumpEvery(timer, period * 1000);
+        }
     }
 
     /**
      * keeps checking for new connections
      */
     private void start() {
-        try (ServerSocket server = new ServerSocket(8000)) {
+        try (ServerSocket server = new ServerSocket(PORT)) {
             server.setReuseAddress(true);
             while (true) {
                 Socket client = server.accept();
                 Logger.log("connected to " + client);
-                new Thread(() -> clientHandler.handle(client)).start();
+                Metrics.connectionOpened();
+                executor.execute(() -> clientHandler.handle(client));
             }
         } catch (IOException e) {
-            Logger.log("server failed");
+            Logger.error("server failed");
+        }
+    }
+
+    /**
+     * handles all connections on a few selector loops instead of a thread per connection
+     */
+    private void startNio() {
+        try {
+            NioServer server = new NioServer(clientHandler, executor, timer, SELECTOR_LOOPS, policy, sessions,
+                    leaderboard);
+            server.start(PORT);
+        } catch (IOException e) {
+            Logger.error("server failed");
         }
     }
 }
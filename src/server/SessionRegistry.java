@@ -0,0 +1,149 @@
+package server;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * keeps the session of every connected player under the token it got in the handshake response.
+ * a client that loses its connection can send the token in a resume packet to get its Player back,
+ * with its points and its place in the match. a session whose connection is lost is evicted after
+ * a grace period if nobody resumes it, and a session whose match is over is removed right away, even
+ * if its connection is still open.
+ */
+public class SessionRegistry {
+    private static final int TOKEN_BYTES = 16;
+    private static final SecureRandom random = new SecureRandom();
+    private final Map<String, Session> sessions;
+    private final TimingWheel timer;
+    private final long gracePeriod;
+
+    /**
+     * @param timer       runs the evictions
+     * @param gracePeriod how long a lost session can be resumed in milliseconds
+     */
+    public SessionRegistry(TimingWheel timer, long gracePeriod) {
+        this.timer = timer;
+        this.gracePeriod = gracePeriod;
+        sessions = new ConcurrentHashMap<>();
+    }
+
+    private static class Session {
+        private final String token;
+        private final Player player;
+        private Connection connection; // guarded by the session
+        private TimingWheel.Timeout eviction; // guarded by the session
+
+        private Session(String token, Player player) {
+            this.token = token;
+            this.player = player;
+        }
+    }
+
+    /**
+     * @return a new random token that can't be guessed
+     */
+    public static String newToken() {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    /**
+     * adds the session of a new player under the token of its connection
+     */
+    public void register(Player player, Connection connection) {
+        Session session = new Session(connection.getToken(), player);
+        sessions.put(session.token, session);
+        attach(session, connection);
+        player.onFinish(() -> finished(session));
+    }
+
+    /**
+     * @return true if there is a session with the token and its match isn't over
+     */
+    public boolean canResume(String token) {
+        Session session = token == null ? null : sessions.get(token);
+        return session != null && !session.player.isDone();
+    }
+
+    /**
+     * moves a session to a new connection and closes the old one if it's still open
+     *
+     * @param connection connection that sent the resume packet
+     * @return the player of the session or null if it can't be resumed anymore
+     */
+    public Player resume(Connection connection) {
+        Session session = sessions.get(connection.getToken());
+        if (session == null || session.player.isDone()) {
+            return null;
+        }
+        Connection old = attach(session, connection);
+        if (old != null) {
+            old.close();
+        }
+        Logger.log("resumed session of " + session.player + " at " + connection);
+        return session.player;
+    }
+
+    /**
+     * @return the connection the session had before
+     */
+    private Connection attach(Session session, Connection connection) {
+        Connection old;
+        synchronized (session) {
+            old = session.connection;
+            session.connection = connection;
+            if (session.eviction != null) {
+                session.eviction.cancel();
+                session.eviction = null;
+            }
+        }
+        session.player.attach(connection);
+        connection.onClose(() -> detached(session, connection));
+        return old;
+    }
+
+    /**
+     * starts the grace period of a session unless it already moved to another connection or its match is over
+     */
+    private void detached(Session session, Connection connection) {
+        synchronized (session) {
+            if (session.connection != connection || session.player.isDone()) {
+                return;
+            }
+            session.connection = null;
+            session.eviction = timer.schedule(() -> evict(session), gracePeriod);
+        }
+        Logger.debug("lost the connection of ", session.player);
+    }
+
+    private void evict(Session session) {
+        synchronized (session) {
+            if (session.connection != null) {
+                return; // resumed while the eviction was on its way
+            }
+            sessions.remove(session.token, session);
+        }
+        Logger.log("evicted the session of " + session.player);
+    }
+
+    /**
+     * removes a session whose match is over, it can't be resumed anymore
+     */
+    private void finished(Session session) {
+        synchronized (session) {
+            if (session.eviction != null) {
+                session.eviction.cancel();
+                session.eviction = null;
+            }
+            sessions.remove(session.token, session);
+        }
+        Logger.debug("removed the finished session of ", session.player);
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+}
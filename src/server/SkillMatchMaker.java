@@ -0,0 +1,263 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * matches players with others of a similar rating. players are striped over lock-free queues, one for each
+ * rating bucket, and every bucket forms its matches on its own so joins to different buckets never contend.
+ * players that wait too long have their search widened to the neighbouring buckets.
+ */
+public class SkillMatchMaker implements Lobby {
+    private static final int BUCKET_WIDTH = 100; // rating points
+    private static final int BUCKETS_COUNT = 32;
+    private static final long WIDEN_TIME = 5000; // milliseconds of waiting for every bucket added to the search
+    private static final int MAX_WIDENING = 4;
+    private final int gameSize;
+    private final Bucket[] buckets;
+    private final Consumer<List<Player>> onMatch;
+
+    /**
+     * @param gameSize number of players in a match
+     * @param timer    runs the periodic check that widens the search of players that waited too long
+     * @param onMatch  gets called with the players of every formed match
+     */
+    public SkillMatchMaker(int gameSize, TimingWheel timer, Consumer<List<Player>> onMatch) {
+        this.gameSize = gameSize;
+        this.onMatch = onMatch;
+        buckets = new Bucket[BUCKETS_COUNT];
+        for (int i = 0; i < BUCKETS_COUNT; i++) {
+            buckets[i] = new Bucket();
+        }
+        timer.scheduleAtFixedRate(this::widenSearches, WIDEN_TIME, WIDEN_TIME / 2);
+    }
+
+    private static class Bucket {
+        private final Queue<Ticket> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger waitingCount = new AtomicInteger(); // tickets that aren't claimed yet
+        private final AtomicInteger work = new AtomicInteger(); // requests to form matches since the last drain
+    }
+
+    /**
+     * a player waiting in a bucket. a ticket can be claimed by exactly one match.
+     */
+    private static class Ticket {
+        private final Player player;
+        private final int bucket;
+        private final long since;
+        private final AtomicBoolean claimed;
+        private final Events.QueueWait event;
+
+        private Ticket(Player player, int bucket) {
+            this.player = player;
+            this.bucket = bucket;
+            since = System.currentTimeMillis();
+            claimed = new AtomicBoolean();
+            event = new Events.QueueWait();
+            event.begin();
+        }
+
+        private boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
+    }
+
+    @Override
+    public void add(Player player) {
+        int index = bucketOf(player.getRating());
+        Bucket bucket = buckets[index];
+        player.send(MatchMaker.WAITING_MESSAGE);
+        bucket.queue.add(new Ticket(player, index));
+        bucket.waitingCount.incrementAndGet();
+        Metrics.playerWaiting();
+        Logger.debug("added to rating bucket " + index + ": ", player);
+        formMatches(bucket);
+    }
+
+    private static int bucketOf(int rating) {
+        return Math.max(0, Math.min(BUCKETS_COUNT - 1, rating / BUCKET_WIDTH));
+    }
+
+    /**
+     * @return number of tickets in the queues, it's the waiting count plus the tickets of matches that are
+     * being formed right now
+     */
+    public int getQueuedCount() {
+        int count = 0;
+        for (Bucket bucket : buckets) {
+            count += bucket.queue.size();
+        }
+        return count;
+    }
+
+    public int getWaitingCount() {
+        int count = 0;
+        for (Bucket bucket : buckets) {
+            count += bucket.waitingCount.get();
+        }
+        return count;
+    }
+
+    /**
+     * forms as many matches as a bucket can. only one thread drains a bucket at a time, if another
+     * thread asks while it's draining, the draining thread goes around once more instead of blocking it.
+     */
+    private void formMatches(Bucket bucket) {
+        if (bucket.work.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            List<Player> match;
+            while ((match = takeMatch(bucket)) != null) {
+                onMatch.accept(match);
+            }
+            missed = bucket.work.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    /**
+     * claims the oldest tickets of a bucket. the tickets stay in the queue until the match is formed, so
+     * tickets that are given back keep their place.
+     */
+    private List<Player> takeMatch(Bucket bucket) {
+        if (bucket.waitingCount.get() < gameSize) {
+            return null;
+        }
+        List<Ticket> tickets = new ArrayList<>(gameSize);
+        for (Ticket ticket : bucket.queue) {
+            if (tickets.size() == gameSize) {
+                break;
+            }
+            // a ticket that is already claimed was taken by a wider search
+            if (ticket.claim()) {
+                tickets.add(ticket);
+            }
+        }
+        if (tickets.size() < gameSize) {
+            release(tickets);
+            return null;
+        }
+        remove(tickets);
+        bucket.waitingCount.addAndGet(-gameSize);
+        return playersOf(tickets);
+    }
+
+    /**
+     * lets players who waited too long be matched with players from the neighbouring buckets.
+     * every WIDEN_TIME of waiting adds one more bucket on each side.
+     */
+    private void widenSearches() {
+        long now = System.currentTimeMillis();
+        for (int index = 0; index < BUCKETS_COUNT; index++) {
+            Ticket oldest = oldestTicket(buckets[index]);
+            if (oldest == null) {
+                continue;
+            }
+            int widening = (int) Math.min(MAX_WIDENING, (now - oldest.since) / WIDEN_TIME);
+            List<Player> match;
+            while (widening > 0 && (match = takeWideMatch(oldest, index, widening)) != null) {
+                Logger.log("formed a match across " + (2 * widening + 1) + " rating buckets");
+                onMatch.accept(match);
+                oldest = oldestTicket(buckets[index]);
+                if (oldest == null) {
+                    break;
+                }
+                widening = (int) Math.min(MAX_WIDENING, (now - oldest.since) / WIDEN_TIME);
+            }
+        }
+    }
+
+    private Ticket oldestTicket(Bucket bucket) {
+        for (Ticket ticket : bucket.queue) {
+            if (!ticket.claimed.get()) {
+                return ticket;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * looks for players in the buckets around the oldest player, nearest buckets first
+     */
+    private List<Player> takeWideMatch(Ticket oldest, int index, int widening) {
+        List<Ticket> candidates = new ArrayList<>(gameSize);
+        candidates.add(oldest);
+        for (int distance = 0; distance <= widening && candidates.size() < gameSize; distance++) {
+            addCandidates(candidates, index - distance, oldest);
+            if (distance != 0) {
+                addCandidates(candidates, index + distance, oldest);
+            }
+        }
+        if (candidates.size() < gameSize) {
+            return null;
+        }
+
+        List<Ticket> claimed = new ArrayList<>(gameSize);
+        for (Ticket ticket : candidates) {
+            if (!ticket.claim()) {
+                release(claimed);
+                return null;
+            }
+            claimed.add(ticket);
+        }
+        remove(claimed);
+        for (Ticket ticket : claimed) {
+            buckets[ticket.bucket].waitingCount.decrementAndGet();
+        }
+        return playersOf(claimed);
+    }
+
+    private void addCandidates(List<Ticket> candidates, int index, Ticket oldest) {
+        if (index < 0 || index >= BUCKETS_COUNT) {
+            return;
+        }
+        for (Ticket ticket : buckets[index].queue) {
+            if (candidates.size() == gameSize) {
+                return;
+            }
+            if (ticket != oldest && !ticket.claimed.get()) {
+                candidates.add(ticket);
+            }
+        }
+    }
+
+    /**
+     * gives back tickets of a match that couldn't be formed. they never left their queues.
+     */
+    private void release(List<Ticket> tickets) {
+        for (Ticket ticket : tickets) {
+            ticket.claimed.set(false);
+        }
+    }
+
+    /**
+     * takes the tickets of a formed match out of their queues
+     */
+    private void remove(List<Ticket> tickets) {
+        for (Ticket ticket : tickets) {
+            buckets[ticket.bucket].queue.remove(ticket);
+        }
+    }
+
+    private static List<Player> playersOf(List<Ticket> tickets) {
+        List<Player> players = new ArrayList<>(tickets.size());
+        long now = System.currentTimeMillis();
+        for (Ticket ticket : tickets) {
+            Metrics.playerMatched(now - ticket.since);
+            ticket.event.end();
+            if (ticket.event.shouldCommit()) {
+                ticket.event.playerId = ticket.player.getId();
+                ticket.event.queue = "rating bucket " + ticket.bucket;
+                ticket.event.commit();
+            }
+            players.add(ticket.player);
+        }
+        return players;
+    }
+}
@@ -0,0 +1,36 @@
+package server;
+
+/**
+ * decides what happens when a client reads slower than the server writes and its outbound queue is full
+ */
+public enum SlowConsumerPolicy {
+    /**
+     * drops the oldest message that is still waiting so the newer ones take its place. questions and
+     * responses are never dropped, the connection is closed when the queue is full of them.
+     */
+    COALESCE,
+    /**
+     * drops the new frame and keeps what is already waiting
+     */
+    DROP,
+    /**
+     * closes the connection
+     */
+    DISCONNECT;
+
+    /**
+     * @return the policy given as --slow-consumer=coalesce|drop|disconnect or COALESCE
+     */
+    public static SlowConsumerPolicy fromArgs(String[] args) {
+        for (String arg : args) {
+            if (arg.startsWith("--slow-consumer=")) {
+                try {
+                    return valueOf(arg.substring("--slow-consumer=".length()).toUpperCase());
+                } catch (IllegalArgumentException e) {
+                    Logger.warn("invalid slow consumer policy " + arg);
+                }
+            }
+        }
+        return COALESCE;
+    }
+}
@@ -0,0 +1,291 @@
+package server;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * one timer for the whole server. it's a hierarchical timing wheel: four levels of 64 slots where
+ * every slot of a level covers a full turn of the level below it. scheduling and cancelling a task
+ * are O(1) no matter how many tasks are waiting, and only a single thread is needed to keep time.
+ * expired tasks are handed to an executor so a slow task can't delay the others.
+ */
+public class TimingWheel {
+    private static final int LEVELS = 4;
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final long MAX_DELTA = (1L << (SLOT_BITS * LEVELS)) - 1;
+    private final long tickNanos;
+    private final Executor executor;
+    private final Slot[][] wheel;
+    private final Queue<Node> added;
+    private final Queue<Node> cancelled;
+    private final Thread ticker;
+    private final long startTime;
+    private long tick; // next tick to be processed, only used by the ticker thread
+
+    /**
+     * @param tickMillis length of a tick. tasks can't run more precisely than this
+     * @param executor   runs the expired tasks
+     */
+    public TimingWheel(long tickMillis, Executor executor) {
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        this.executor = executor;
+        wheel = new Slot[LEVELS][SLOTS];
+        for (Slot[] level : wheel) {
+            for (int i = 0; i < SLOTS; i++) {
+                level[i] = new Slot();
+            }
+        }
+        added = new ConcurrentLinkedQueue<>();
+        cancelled = new ConcurrentLinkedQueue<>();
+        startTime = System.nanoTime();
+        ticker = new Thread(this::run, "timing-wheel");
+        ticker.setDaemon(true);
+    }
+
+    /**
+     * a scheduled task that can be cancelled before it runs
+     */
+    public interface Timeout {
+        /**
+         * @return false if the task already ran or was already cancelled
+         */
+        boolean cancel();
+    }
+
+    public void start() {
+        ticker.start();
+    }
+
+    /**
+     * runs a short task on the executor of the expired tasks right away
+     */
+    public void execute(Runnable task) {
+        executor.execute(task);
+    }
+
+    /**
+     * runs a task once after a delay
+     *
+     * @param task  task to run
+     * @param delay delay in milliseconds
+     * @return handle that can be used to cancel the task
+     */
+    public Timeout schedule(Runnable task, long delay) {
+        long deadline = System.nanoTime() - startTime + TimeUnit.MILLISECONDS.toNanos(delay);
+        // round up so a task never runs before its delay
+        Node node = new Node(task, (deadline + tickNanos - 1) / tickNanos);
+        added.add(node);
+        return node;
+    }
+
+    /**
+     * runs a task again and again until it gets cancelled
+     *
+     * @param task         task to run
+     * @param initialDelay delay before the first run in milliseconds
+     * @param period       time between the start of two runs in milliseconds
+     * @return handle that can be used to stop the task
+     */
+    public Timeout scheduleAtFixedRate(Runnable task, long initialDelay, long period) {
+        RepeatingTask repeatingTask = new RepeatingTask(task, period);
+        repeatingTask.next = schedule(repeatingTask, initialDelay);
+        return repeatingTask;
+    }
+
+    private void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            waitForNextTick();
+            transferAddedTimeouts();
+            removeCancelledTimeouts();
+            long now = (System.nanoTime() - startTime) / tickNanos;
+            while (tick <= now) {
+                processTick();
+                tick += 1;
+            }
+        }
+    }
+
+    private void waitForNextTick() {
+        long sleep = (tick * tickNanos) - (System.nanoTime() - startTime);
+        if (sleep > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(sleep);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void transferAddedTimeouts() {
+        Node node;
+        while ((node = added.poll()) != null) {
+            if (node.state.get() == Node.WAITING) {
+                place(node);
+            }
+        }
+    }
+
+    private void removeCancelledTimeouts() {
+        Node node;
+        while ((node = cancelled.poll()) != null) {
+            if (node.slot != null) {
+                node.slot.remove(node);
+            }
+        }
+    }
+
+    /**
+     * puts a node in the lowest level that can hold its deadline
+     */
+    private void place(Node node) {
+        long deadline = Math.max(node.deadline, tick);
+        long delta = Math.min(deadline - tick, MAX_DELTA);
+        int level = 0;
+        while (delta >= SLOTS) {
+            delta >>= SLOT_BITS;
+            level += 1;
+        }
+        long position = Math.min(deadline, tick + MAX_DELTA);
+        int index = (int) (position >> (SLOT_BITS * level)) & SLOT_MASK;
+        wheel[level][index].add(node);
+    }
+
+    private void processTick() {
+        // when a level finishes a turn, the next slot of the level above moves down
+        for (int level = 1; level < LEVELS; level++) {
+            if ((tick & ((1L << (SLOT_BITS * level)) - 1)) != 0) {
+                break;
+            }
+            int index = (int) (tick >> (SLOT_BITS * level)) & SLOT_MASK;
+            cascade(wheel[level][index]);
+        }
+
+        Slot slot = wheel[0][(int) tick & SLOT_MASK];
+        Node node = slot.head;
+        while (node != null) {
+            Node next = node.next;
+            slot.remove(node);
+            if (node.deadline <= tick) {
+                expire(node);
+            } else {
+                place(node);
+            }
+            node = next;
+        }
+    }
+
+    private void cascade(Slot slot) {
+        Node node = slot.head;
+        while (node != null) {
+            Node next = node.next;
+            slot.remove(node);
+            place(node);
+            node = next;
+        }
+    }
+
+    private void expire(Node node) {
+        if (node.state.compareAndSet(Node.WAITING, Node.EXPIRED)) {
+            executor.execute(node.task);
+        }
+    }
+
+    /**
+     * a doubly linked list of nodes. only touched by the ticker thread.
+     */
+    private static class Slot {
+        private Node head;
+        private Node tail;
+
+        private void add(Node node) {
+            node.slot = this;
+            node.prev = tail;
+            node.next = null;
+            if (tail == null) {
+                head = node;
+            } else {
+                tail.next = node;
+            }
+            tail = node;
+        }
+
+        private void remove(Node node) {
+            if (node.prev == null) {
+                head = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if (node.next == null) {
+                tail = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+            node.slot = null;
+            node.prev = null;
+            node.next = null;
+        }
+    }
+
+    private class Node implements Timeout {
+        private static final int WAITING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+        private final Runnable task;
+        private final long deadline; // in ticks
+        private final AtomicInteger state;
+        private Slot slot;
+        private Node prev;
+        private Node next;
+
+        private Node(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+            state = new AtomicInteger(WAITING);
+        }
+
+        @Override
+        public boolean cancel() {
+            if (!state.compareAndSet(WAITING, CANCELLED)) {
+                return false;
+            }
+            cancelled.add(this);
+            return true;
+        }
+    }
+
+    private class RepeatingTask implements Runnable, Timeout {
+        private final Runnable task;
+        private final long period;
+        private volatile boolean stopped;
+        private volatile Timeout next;
+
+        private RepeatingTask(Runnable task, long period) {
+            this.task = task;
+            this.period = period;
+        }
+
+        @Override
+        public void run() {
+            if (stopped) {
+                return;
+            }
+            next = schedule(this, period);
+            task.run();
+        }
+
+        @Override
+        public boolean cancel() {
+            if (stopped) {
+                return false;
+            }
+            stopped = true;
+            next.cancel();
+            return true;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package test;
+
+import protocol.Codec;
+import protocol.Frame;
+import protocol.Packet;
+import server.Connection;
+import server.PlayerSocket;
+import server.SlowConsumerPolicy;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * asks a blocking socket several questions in a row. the first round ends before the client answers, like
+ * when another player answered first, and the answer the client sends in the next round has to go to the
+ * next question. the last question is never answered and should time out.
+ */
+public class BlockingAnswerTest {
+    private static final int TIMEOUT = 500; // milliseconds
+
+    public static void main(String[] args) throws IOException, InterruptedException, ExecutionException,
+            TimeoutException {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        Frame question = Frame.of(Packet.question("?"));
+        try (ServerSocket server = new ServerSocket(0);
+             Socket client = new Socket("localhost", server.getLocalPort())) {
+            OutputStream out = client.getOutputStream();
+            write(out, Packet.name("player"));
+            PlayerSocket socket = new PlayerSocket(server.accept(), executor, SlowConsumerPolicy.COALESCE, null, null);
+            socket.setTimeOut(TIMEOUT);
+            socket.startReading();
+
+            CompletableFuture<Integer> first = socket.sendQuestion(question);
+            Thread.sleep(50);
+            CompletableFuture<Integer> second = socket.sendQuestion(question);
+            System.out.println("round 1 ended early, answer: " + first.get(1, TimeUnit.SECONDS) + " (expected " + Connection.NO_ANSWER + ")");
+            write(out, Packet.answer(2));
+            System.out.println("round 2 answer: " + second.get(1, TimeUnit.SECONDS) + " (expected 2)");
+
+            CompletableFuture<Integer> third = socket.sendQuestion(question);
+            write(out, Packet.answer(3));
+            System.out.println("round 3 answer: " + third.get(1, TimeUnit.SECONDS) + " (expected 3)");
+
+            long start = System.nanoTime();
+            CompletableFuture<Integer> fourth = socket.sendQuestion(question);
+            int answer = fourth.get(3 * TIMEOUT, TimeUnit.MILLISECONDS);
+            System.out.println("round 4 answer: " + answer + " (expected " + Connection.TIMED_OUT + ") after "
+                    + (System.nanoTime() - start) / 1_000_000 + "ms (timeout " + TIMEOUT + "ms)");
+
+            CompletableFuture<Integer> fifth = socket.sendQuestion(question);
+            client.shutdownOutput();
+            System.out.println("answer after the client left: " + fifth.get(1, TimeUnit.SECONDS) + " (expected " + Connection.NO_ANSWER + ")");
+        }
+        executor.shutdownNow();
+    }
+
+    private static void write(OutputStream out, Packet packet) throws IOException {
+        ByteBuffer frame = Codec.JSON.encode(packet);
+        out.write(frame.array(), frame.position(), frame.remaining());
+        out.flush();
+    }
+}
@@ -0,0 +1,33 @@
+package test;
+
+import server.Histogram;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+public class HistogramTest {
+    public static void main(String[] args) throws InterruptedException {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i);
+        }
+        // expected p50 about 500, p90 about 900, p99 about 990, each at most 25% above
+        System.out.println("1..1000: " + histogram.snapshot());
+
+        Histogram concurrent = new Histogram();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < 1_000_000; i++) {
+                    concurrent.record(ThreadLocalRandom.current().nextLong(1_000_000));
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        System.out.println("8 threads: count " + concurrent.getCount() + " (expected 8000000), "
+                + concurrent.snapshot());
+    }
+}
@@ -0,0 +1,79 @@
+package test;
+
+import protocol.Codec;
+import protocol.Packet;
+import protocol.ProtocolException;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * checks the JSON codec against valid, odd and invalid packets and measures what decoding an answer allocates
+ */
+public class JsonCodecTest {
+    private static final int ANSWERS = 1_000_000;
+
+    public static void main(String[] args) throws ProtocolException {
+        Packet[] packets = {
+                Packet.name("alice").setQueue("quad").setProtocol("binary"),
+                Packet.response(true).setProtocol("binary"),
+                Packet.message("tab\there \"quoted\" \\ new\nline é \u0001"),
+                Packet.question("What is 2 + 2? (5 points)\n1) 3\n2) 4\n"),
+                Packet.answer(-42),
+                Packet.leaderboard(10, "alice"),
+                Packet.spectate(-1)
+        };
+        for (Packet packet : packets) {
+            Packet decoded = new Packet();
+            Codec.JSON.decode(Codec.JSON.encode(packet), decoded);
+            System.out.println(packet.getType() + " round trip: "
+                    + Codec.JSON.encode(packet).equals(Codec.JSON.encode(decoded)));
+        }
+
+        String[] lines = {
+                "{ \"answer\" : 3 , \"extra\": [1, {\"a\": \"}\"}], \"type\": \"answer\" }",
+                "{\"type\":\"message\",\"content\":\"\\u0041\\/B\"}",
+                "{\"type\":\"answer\"}",
+                "{\"type\":\"answer\",\"answer\":99999999999}",
+                "{\"type\":\"nope\",\"answer\":1}",
+                "{\"type\":\"answer\",\"answer\":1} trailing",
+                "not json",
+                "{\"type\":\"name\",\"name\":\"x\",\"queue\":null}"
+        };
+        for (String line : lines) {
+            System.out.println(line + " -> " + decode(line + "\n"));
+        }
+        System.out.println("too long -> " + decode("{\"type\":\"message\",\"content\":\""
+                + "x".repeat(Codec.MAX_FRAME_SIZE) + "\"}\n"));
+
+        ByteBuffer answer = Codec.JSON.encode(Packet.answer(2));
+        Packet out = new Packet();
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        for (int round = 0; round < 3; round++) {
+            long allocated = threads.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            for (int i = 0; i < ANSWERS; i++) {
+                answer.rewind();
+                Codec.JSON.decode(answer, out);
+            }
+            long nanos = System.nanoTime() - start;
+            System.out.println("decoded " + ANSWERS + " answers in " + nanos / 1_000_000 + "ms, allocated "
+                    + (threads.getCurrentThreadAllocatedBytes() - allocated) + " bytes");
+        }
+    }
+
+    private static String decode(String line) {
+        Packet packet = new Packet();
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+            if (!Codec.JSON.decode(buffer, packet)) {
+                return "incomplete";
+            }
+            return packet.getType() + " text=" + packet.getText() + " number=" + packet.getNumber()
+                    + " queue=" + packet.getQueue();
+        } catch (ProtocolException e) {
+            return "invalid: " + e.getMessage();
+        }
+    }
+}
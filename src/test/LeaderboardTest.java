@@ -0,0 +1,121 @@
+package test;
+
+import protocol.Codec;
+import protocol.Packet;
+import protocol.ProtocolException;
+import server.Leaderboard;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * adds match points from many threads, checks the top and the ranks against counting every score, plays
+ * matches that move the ratings, then saves a snapshot and loads it back
+ */
+public class LeaderboardTest {
+    private static final int THREADS = 8;
+    private static final int UPDATES_PER_THREAD = 250_000;
+    private static final int NAMES = 10_000;
+
+    public static void main(String[] args) throws IOException, InterruptedException, ProtocolException {
+        Leaderboard leaderboard = new Leaderboard();
+        long[] expected = new long[NAMES];
+        long start = System.nanoTime();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            threads.add(Thread.ofPlatform().start(() -> {
+                Random random = new Random(thread);
+                for (int i = 0; i < UPDATES_PER_THREAD; i++) {
+                    leaderboard.add("player" + random.nextInt(NAMES), random.nextInt(20));
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        System.out.println(THREADS * UPDATES_PER_THREAD + " updates in " + millis + "ms");
+        for (int t = 0; t < THREADS; t++) {
+            Random random = new Random(t);
+            for (int i = 0; i < UPDATES_PER_THREAD; i++) {
+                expected[random.nextInt(NAMES)] += random.nextInt(20);
+            }
+        }
+        System.out.println("scores match: " + scoresMatch(leaderboard, expected));
+        System.out.println("ranks match: " + ranksMatch(leaderboard, expected));
+
+        // one score past the cap of the counters is ranked on the skip list
+        leaderboard.add("player0", 1 << 20);
+        expected[0] += 1 << 20;
+        System.out.println("rank of a huge score: " + leaderboard.rank("player0") + " (expected 1)");
+        System.out.println("ranks match: " + ranksMatch(leaderboard, expected));
+        System.out.println(leaderboard.describe(3, "player1"));
+
+        // the winner of every match goes up and the loser down, however many matches they played
+        for (int i = 0; i < 10; i++) {
+            leaderboard.addMatch(new String[]{"winner", "loser"}, new int[]{10, 5});
+            leaderboard.addMatch(new String[]{"drawer", "other drawer"}, new int[]{5, 5});
+        }
+        System.out.println("ratings after 10 matches: winner " + leaderboard.rating("winner") + ", loser "
+                + leaderboard.rating("loser") + ", drawer " + leaderboard.rating("drawer") + " (expected above, below"
+                + " and at 1000)");
+
+        try {
+            leaderboard.add("player1", -1);
+            System.out.println("negative points rejected: false (expected true)");
+        } catch (IllegalArgumentException e) {
+            System.out.println("negative points rejected: true (expected true)");
+        }
+
+        Path snapshot = Files.createTempFile("leaderboard", ".snapshot");
+        leaderboard.snapshot(snapshot);
+        Leaderboard loaded = Leaderboard.load(snapshot);
+        System.out.println("loaded " + loaded.size() + " names, scores match: " + scoresMatch(loaded, expected)
+                + ", ranks match: " + ranksMatch(loaded, expected) + ", ratings match: "
+                + (loaded.rating("winner") == leaderboard.rating("winner")));
+        Files.delete(snapshot);
+
+        for (Codec codec : new Codec[]{Codec.JSON, Codec.BINARY}) {
+            Packet decoded = new Packet();
+            codec.decode(codec.encode(Packet.leaderboard(5, "alice")), decoded);
+            System.out.println(codec.getName() + " round trip: " + decoded.getType() + " " + decoded.getNumber()
+                    + " " + decoded.getText());
+        }
+    }
+
+    private static boolean scoresMatch(Leaderboard leaderboard, long[] expected) {
+        for (int i = 0; i < NAMES; i++) {
+            Leaderboard.Entry entry = leaderboard.get("player" + i);
+            if (entry == null ? expected[i] != 0 || leaderboard.size() == NAMES : entry.score() != expected[i]) {
+                return false;
+            }
+        }
+        List<Leaderboard.Entry> top = leaderboard.top(Leaderboard.MAX_TOP);
+        for (int i = 1; i < top.size(); i++) {
+            if (top.get(i - 1).score() < top.get(i).score()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean ranksMatch(Leaderboard leaderboard, long[] expected) {
+        for (int i = 0; i < NAMES; i += 97) {
+            long above = 0;
+            for (long score : expected) {
+                if (score > expected[i]) {
+                    above++;
+                }
+            }
+            if (leaderboard.rank("player" + i) != above + 1) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,47 @@
+package test;
+
+import server.MappedQuestionBank;
+import server.Question;
+import server.QuestionIndex;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * compiles banks of different sizes and checks that mapping them takes about the same time and heap
+ */
+public class QuestionBankTest {
+    public static void main(String[] args) throws IOException {
+        for (int size : new int[]{1_000, 100_000, 1_000_000}) {
+            Path path = Files.createTempFile("questions", ".bank");
+            List<Question> questions = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                questions.add(new Question("question " + i + "?", new String[]{"1. yes", "2. no", "3. maybe"},
+                        i % 3 + 1, 5));
+            }
+            MappedQuestionBank.write(path, questions);
+            questions = null;
+            System.gc();
+
+            Runtime runtime = Runtime.getRuntime();
+            long heap = runtime.totalMemory() - runtime.freeMemory();
+            long start = System.nanoTime();
+            MappedQuestionBank bank = MappedQuestionBank.open(path);
+            long openMicros = (System.nanoTime() - start) / 1000;
+            System.gc();
+            long heapGrowth = runtime.totalMemory() - runtime.freeMemory() - heap;
+
+            Question last = bank.get(size - 1);
+            boolean decoded = last.getQuestion().equals("question " + (size - 1) + "?")
+                    && last.getCorrectAnswer() == (size - 1) % 3 + 1 && last.getChoices().length == 3;
+            Question[] sample = new QuestionIndex(bank).sample(5);
+            System.out.println(size + " questions (" + Files.size(path) / 1024 + " KB): opened in " + openMicros
+                    + "us, heap grew by " + heapGrowth / 1024 + " KB, decoded correctly: " + decoded
+                    + ", sampled " + sample.length);
+            Files.delete(path);
+        }
+    }
+}
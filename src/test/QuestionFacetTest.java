@@ -0,0 +1,54 @@
+package test;
+
+import server.Difficulty;
+import server.MappedQuestionBank;
+import server.MemoryQuestionBank;
+import server.Question;
+import server.QuestionBank;
+import server.QuestionIndex;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * samples filtered sets from memory and mapped banks, checks they match the filter and times them
+ */
+public class QuestionFacetTest {
+    private static final String[] CATEGORIES = {"Animals", "Geography", "Science", "Movies", "History"};
+    private static final int SIZE = 1_000_000;
+    private static final int SAMPLES = 1_000_000;
+
+    public static void main(String[] args) throws IOException {
+        List<Question> questions = new ArrayList<>(SIZE);
+        for (int i = 0; i < SIZE; i++) {
+            questions.add(new Question("question " + i, new String[]{"1. a", "2. b"}, 1, 5,
+                    CATEGORIES[i % CATEGORIES.length], Difficulty.values()[i / 7 % 3]));
+        }
+        Path path = Files.createTempFile("questions", ".bank");
+        MappedQuestionBank.write(path, questions);
+        check("memory", new MemoryQuestionBank(questions));
+        check("mapped", MappedQuestionBank.open(path));
+        Files.delete(path);
+    }
+
+    private static void check(String name, QuestionBank bank) {
+        QuestionIndex index = new QuestionIndex(bank);
+        boolean matching = true;
+        long start = System.nanoTime();
+        for (int i = 0; i < SAMPLES; i++) {
+            for (Question question : index.sample(3, "Animals", Difficulty.EASY)) {
+                matching &= question.getCategory().equals("Animals") && question.getDifficulty() == Difficulty.EASY;
+            }
+            for (Question question : index.sample(2, "Animals", Difficulty.HARD)) {
+                matching &= question.getCategory().equals("Animals") && question.getDifficulty() == Difficulty.HARD;
+            }
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        System.out.println(name + ": " + SAMPLES + " sets of 3 easy + 2 hard animal questions in " + millis
+                + "ms, all matching: " + matching + ", missing category gives "
+                + index.sample(5, "Cooking", null).length + " questions");
+    }
+}
@@ -0,0 +1,64 @@
+package test;
+
+import server.MemoryQuestionBank;
+import server.Question;
+import server.QuestionIndex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * checks that samples are distinct and evenly spread, and how fast threads sample a big index together
+ */
+public class QuestionIndexTest {
+    private static final int THREADS = 8;
+    private static final int SAMPLES = 1_000_000;
+
+    public static void main(String[] args) throws InterruptedException {
+        QuestionIndex small = new QuestionIndex(new MemoryQuestionBank(questions(10)));
+        int[] counts = new int[10];
+        for (int i = 0; i < 100_000; i++) {
+            Question[] sample = small.sample(3);
+            if (new HashSet<>(Arrays.asList(sample)).size() != 3) {
+                System.out.println("repeated question in " + Arrays.toString(sample));
+            }
+            for (Question question : sample) {
+                counts[question.getPoints()]++;
+            }
+        }
+        System.out.println("picks of each question (expected ~30000): " + Arrays.toString(counts));
+
+        QuestionIndex big = new QuestionIndex(new MemoryQuestionBank(questions(1_000_000)));
+        AtomicIntegerArray firstPicks = new AtomicIntegerArray(2);
+        Thread[] threads = new Thread[THREADS];
+        long start = System.nanoTime();
+        for (int t = 0; t < THREADS; t++) {
+            threads[t] = new Thread(() -> {
+                int odd = 0;
+                for (int i = 0; i < SAMPLES; i++) {
+                    odd += big.sample(5)[0].getPoints() % 2;
+                }
+                firstPicks.addAndGet(0, SAMPLES - odd);
+                firstPicks.addAndGet(1, odd);
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        System.out.println(THREADS + " threads took " + THREADS * SAMPLES + " samples of 5 from 1M questions in "
+                + millis + "ms, even/odd first picks " + firstPicks);
+    }
+
+    private static List<Question> questions(int count) {
+        List<Question> questions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            questions.add(new Question("question " + i, new String[]{"a", "b"}, 1, i));
+        }
+        return questions;
+    }
+}
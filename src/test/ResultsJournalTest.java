@@ -0,0 +1,84 @@
+package test;
+
+import server.MatchResult;
+import server.ResultsJournal;
+import server.ResultsReader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * appends results from many threads to a journal with small segments, reads them back, then checks that a
+ * partly written record at the end of the journal is skipped and that a restarted journal gives its
+ * matches other ids
+ */
+public class ResultsJournalTest {
+    private static final int THREADS = 8;
+    private static final int RESULTS_PER_THREAD = 10_000;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Path directory = Files.createTempDirectory("journal");
+        ResultsJournal journal = new ResultsJournal(directory, 256 * 1024);
+        journal.start();
+        long start = System.nanoTime();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < RESULTS_PER_THREAD; i++) {
+                    while (!journal.append(result(thread * RESULTS_PER_THREAD + i))) {
+                        Thread.onSpinWait();
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long appendMillis = (System.nanoTime() - start) / 1_000_000;
+        journal.close();
+        System.out.println("appended " + THREADS * RESULTS_PER_THREAD + " results in " + appendMillis + "ms, "
+                + journal.getCommittedCount() + " committed with " + journal.getSyncCount() + " syncs");
+
+        List<Path> segments;
+        try (Stream<Path> files = Files.list(directory)) {
+            segments = files.sorted().toList();
+        }
+        long[] sum = new long[1];
+        long count = ResultsReader.read(directory, result -> sum[0] += result.getMatchId());
+        long expectedSum = (long) THREADS * RESULTS_PER_THREAD * (THREADS * RESULTS_PER_THREAD - 1) / 2;
+        System.out.println("read " + count + " results from " + segments.size() + " segments, ids "
+                + (sum[0] == expectedSum ? "match" : "don't match"));
+
+        // half a record at the end, like a crash in the middle of a write
+        Files.write(segments.get(segments.size() - 1), new byte[]{0, 0, 0, 100, 1, 2, 3},
+                StandardOpenOption.APPEND);
+        System.out.println("after a torn write: read " + ResultsReader.read(directory, result -> {
+        }) + " results (expected " + count + ")");
+
+        ResultsJournal restarted = new ResultsJournal(directory, 256 * 1024);
+        restarted.start();
+        restarted.close();
+        System.out.println("match ids after a restart: " + journal.matchId(0) + " then " + restarted.matchId(0)
+                + " (expected different)");
+
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    private static MatchResult result(int matchId) {
+        MatchResult.Round[] rounds = new MatchResult.Round[5];
+        for (int i = 0; i < rounds.length; i++) {
+            rounds[i] = new MatchResult.Round(i, matchId % 2, new long[]{1000 + i, -1});
+        }
+        return new MatchResult(matchId, System.currentTimeMillis(), new String[]{"alice", "bob"},
+                new int[]{5, 0}, rounds);
+    }
+}
@@ -0,0 +1,140 @@
+package test;
+
+import protocol.Codec;
+import protocol.Packet;
+import protocol.PacketReader;
+import protocol.PacketType;
+import server.ClientHandler;
+import server.MatchMaker;
+import server.SessionRegistry;
+import server.SlowConsumerPolicy;
+import server.TimingWheel;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * drops the connection of a player in the middle of a match and resumes its session with the token from
+ * the handshake response. the player should get the rest of the match on the new connection, and its
+ * session should be removed when the match ends even though the connection stays open.
+ */
+public class SessionResumeTest {
+    private static final long GRACE_PERIOD = 5000; // longer than the pause before the first question
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        TimingWheel timer = new TimingWheel(10, executor);
+        timer.start();
+        SessionRegistry sessions = new SessionRegistry(timer, GRACE_PERIOD);
+        ClientHandler handler = new ClientHandler(new MatchMaker(timer), executor, SlowConsumerPolicy.COALESCE,
+                sessions, null, null);
+        try (ServerSocket server = new ServerSocket(0)) {
+            executor.execute(() -> {
+                try {
+                    while (true) {
+                        Socket client = server.accept();
+                        executor.execute(() -> handler.handle(client));
+                    }
+                } catch (IOException ignored) {
+                    // test is over
+                }
+            });
+            int port = server.getLocalPort();
+
+            TestClient alice = new TestClient(port);
+            String token = alice.handshake(Packet.name("alice"));
+            TestClient bob = new TestClient(port);
+            bob.handshake(Packet.name("bob"));
+            bob.readUntil(PacketType.MESSAGE, "Waiting"); // sent after the session is registered
+            System.out.println("sessions: " + sessions.size() + " (expected 2)");
+            alice.readUntil(PacketType.MESSAGE, "You were added to a match");
+            alice.socket.close();
+            System.out.println("alice dropped her connection");
+
+            bob.readUntil(PacketType.QUESTION, null);
+            bob.send(Packet.answer(1));
+
+            TestClient rejected = new TestClient(port);
+            System.out.println("unknown token accepted: " + (rejected.handshake(Packet.resume("nope")) != null)
+                    + " (expected false)");
+
+            TestClient resumed = new TestClient(port);
+            System.out.println("resumed: " + (resumed.handshake(Packet.resume(token)) != null) + " (expected true)");
+            resumed.readUntil(PacketType.MESSAGE, "Reconnected");
+            resumed.readUntil(PacketType.QUESTION, null);
+            System.out.println("alice got the next question on the new connection");
+
+            bob.socket.close();
+            Thread.sleep(GRACE_PERIOD + 500);
+            System.out.println("sessions after bob's grace period: " + sessions.size() + " (expected 1)");
+
+            resumed.send(Packet.answer(1));
+            resumed.playToTheEnd();
+            Thread.sleep(100);
+            System.out.println("sessions after the match with alice still connected: " + sessions.size()
+                    + " (expected 0)");
+            resumed.socket.close();
+        }
+        executor.shutdownNow();
+        System.exit(0);
+    }
+
+    private static class TestClient {
+        private final Socket socket;
+        private final PacketReader reader;
+
+        private TestClient(int port) throws IOException {
+            socket = new Socket("localhost", port);
+            reader = new PacketReader(socket.getInputStream(), Codec.JSON);
+        }
+
+        /**
+         * @return the token in the response or null if the server refused the connection
+         */
+        private String handshake(Packet packet) throws IOException {
+            send(packet);
+            Packet response = reader.read(new Packet());
+            return response.getFlag() ? response.getToken() : null;
+        }
+
+        private void send(Packet packet) throws IOException {
+            ByteBuffer frame = Codec.JSON.encode(packet);
+            socket.getOutputStream().write(frame.array(), frame.position(), frame.remaining());
+        }
+
+        /**
+         * reads packets until one of the type arrives that starts with the prefix
+         */
+        private void readUntil(PacketType type, String prefix) throws IOException {
+            Packet packet = new Packet();
+            do {
+                reader.read(packet);
+            } while (packet.getType() != type || (prefix != null && !packet.getText().startsWith(prefix)));
+            System.out.println("  received " + packet.getText().lines().findFirst().orElse(""));
+        }
+
+        /**
+         * answers every question until the message that tells who won the match
+         */
+        private void playToTheEnd() throws IOException {
+            Packet packet = new Packet();
+            while (true) {
+                reader.read(packet);
+                if (packet.getType() == PacketType.QUESTION) {
+                    send(Packet.answer(1));
+                } else if (packet.getType() == PacketType.MESSAGE && isEnd(packet.getText())) {
+                    System.out.println("  received " + packet.getText());
+                    return;
+                }
+            }
+        }
+
+        private static boolean isEnd(String message) {
+            return message.endsWith(" wins!") || message.equals("It's a tie!") || message.equals("Everyone loses");
+        }
+    }
+}
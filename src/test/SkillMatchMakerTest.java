@@ -0,0 +1,110 @@
+package test;
+
+import protocol.Frame;
+import server.Connection;
+import server.Player;
+import server.SkillMatchMaker;
+import server.TimingWheel;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * joins 200k players with random ratings from 4 threads and reports how fast they were matched
+ */
+public class SkillMatchMakerTest {
+    private static final int THREADS = 4;
+    private static final int PLAYERS_PER_THREAD = 50000;
+
+    public static void main(String[] args) throws InterruptedException {
+        TimingWheel timer = new TimingWheel(10, Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r);
+            thread.setDaemon(true);
+            return thread;
+        }));
+        timer.start();
+        AtomicInteger matched = new AtomicInteger();
+        SkillMatchMaker matchMaker = new SkillMatchMaker(2, timer, players -> matched.addAndGet(players.size()));
+
+        CountDownLatch done = new CountDownLatch(THREADS);
+        long start = System.nanoTime();
+        for (int t = 0; t < THREADS; t++) {
+            new Thread(() -> {
+                for (int i = 0; i < PLAYERS_PER_THREAD; i++) {
+                    Player player = new Player(new FakeConnection());
+                    player.setRating(ThreadLocalRandom.current().nextInt(3200));
+                    matchMaker.add(player);
+                }
+                done.countDown();
+            }).start();
+        }
+        done.await();
+        long elapsed = System.nanoTime() - start;
+        int total = THREADS * PLAYERS_PER_THREAD;
+        System.out.println("joins per second: " + (long) (total / (elapsed / 1e9)));
+        System.out.println("matched: " + matched.get() + " waiting: " + matchMaker.getWaitingCount());
+        Thread.sleep(8000);
+        System.out.println("after widening, waiting: " + matchMaker.getWaitingCount() + ", tickets left in the queues: "
+                + matchMaker.getQueuedCount() + " (expected the same)");
+    }
+
+    private static class FakeConnection implements Connection {
+        @Override
+        public String getName() {
+            return "bot";
+        }
+
+        @Override
+        public String getQueue() {
+            return "default";
+        }
+
+        @Override
+        public String getToken() {
+            return null;
+        }
+
+        @Override
+        public boolean isResumed() {
+            return false;
+        }
+
+        @Override
+        public boolean isSpectator() {
+            return false;
+        }
+
+        @Override
+        public int getSpectatedMatch() {
+            return -1;
+        }
+
+        @Override
+        public void setTimeOut(long timeout) {
+        }
+
+        @Override
+        public void send(Frame frame) {
+        }
+
+        @Override
+        public CompletableFuture<Integer> sendQuestion(Frame question) {
+            return CompletableFuture.completedFuture(TIMED_OUT);
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public void closeWhenSent() {
+        }
+
+        @Override
+        public void onClose(Runnable listener) {
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package test;
+
+import protocol.Frame;
+import protocol.Packet;
+import server.OutboundQueue;
+import server.PlayerSocket;
+import server.SlowConsumerPolicy;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * sends a lot of messages to a client that never reads and checks that the sender doesn't wait for it
+ */
+public class SlowConsumerTest {
+    private static final int MESSAGES = 100_000;
+
+    public static void main(String[] args) throws IOException {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        Frame message = Frame.of(Packet.message("x".repeat(1024)));
+        for (SlowConsumerPolicy policy : SlowConsumerPolicy.values()) {
+            try (ServerSocket server = new ServerSocket(0);
+                 Socket client = new Socket("localhost", server.getLocalPort())) {
+                OutputStream out = client.getOutputStream();
+                out.write("{\"type\":\"name\",\"name\":\"slow\"}\n".getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                PlayerSocket socket = new PlayerSocket(server.accept(), executor, policy, null, null);
+
+                long start = System.nanoTime();
+                for (int i = 0; i < MESSAGES; i++) {
+                    socket.send(message);
+                }
+                long millis = (System.nanoTime() - start) / 1_000_000;
+                System.out.println(policy + ": sent " + MESSAGES + " messages in " + millis + "ms, "
+                        + OutboundQueue.getTotalDropped() + " dropped so far, "
+                        + OutboundQueue.getTotalDepth() + " waiting");
+            }
+        }
+        executor.shutdownNow();
+    }
+}
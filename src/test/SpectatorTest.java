@@ -0,0 +1,186 @@
+package test;
+
+import protocol.Codec;
+import protocol.Frame;
+import protocol.Packet;
+import protocol.PacketReader;
+import server.BroadcastGroup;
+import server.NioPlayerSocket;
+import server.PlayerSocket;
+import server.SelectorLoop;
+import server.SlowConsumerPolicy;
+import server.TimingWheel;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * broadcasts messages to many spectators on selector loops and on blocking sockets. every spectator should
+ * get every message in order and closing the group should close everyone after the last message. then a
+ * spectator that never reads gets a flood of messages and should be dropped without the sender waiting.
+ */
+public class SpectatorTest {
+    private static final int LOOPS = 4;
+    private static final int NIO_SPECTATORS = 2000;
+    private static final int BLOCKING_SPECTATORS = 100;
+    private static final int MESSAGES = 100; // about five matches worth of questions and results
+    private static final int FLOOD = 1000;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        ExecutorService writers = Executors.newCachedThreadPool(); // drains the blocking sockets
+        TimingWheel timer = new TimingWheel(10, executor);
+        timer.start();
+        SelectorLoop[] loops = new SelectorLoop[LOOPS];
+        for (int i = 0; i < LOOPS; i++) {
+            loops[i] = new SelectorLoop("loop-" + i);
+            loops[i].setDaemon(true);
+            loops[i].start();
+        }
+        BroadcastGroup group = new BroadcastGroup();
+        BroadcastGroup slowGroup = new BroadcastGroup();
+        AtomicReference<BroadcastGroup> joining = new AtomicReference<>(group);
+        CountDownLatch joined = new CountDownLatch(NIO_SPECTATORS + BLOCKING_SPECTATORS);
+
+        ServerSocketChannel nioServer = ServerSocketChannel.open().bind(new InetSocketAddress("localhost", 0));
+        ServerSocket blockingServer = new ServerSocket(0);
+        executor.execute(() -> {
+            try {
+                for (int i = 0; ; i++) {
+                    new NioPlayerSocket(nioServer.accept(), loops[i % LOOPS], timer, socket -> {
+                        joining.get().add(socket);
+                        joined.countDown();
+                    }, SlowConsumerPolicy.COALESCE, null, null).register();
+                }
+            } catch (IOException ignored) {
+                // test is over
+            }
+        });
+        executor.execute(() -> {
+            try {
+                while (true) {
+                    Socket client = blockingServer.accept();
+                    executor.execute(() -> {
+                        try {
+                            group.add(new PlayerSocket(client, writers, SlowConsumerPolicy.COALESCE, null, null));
+                            joined.countDown();
+                        } catch (IOException e) {
+                            System.out.println("handshake failed");
+                        }
+                    });
+                }
+            } catch (IOException ignored) {
+                // test is over
+            }
+        });
+
+        AtomicInteger inOrder = new AtomicInteger();
+        AtomicInteger closedAfterLast = new AtomicInteger();
+        CountDownLatch finished = new CountDownLatch(NIO_SPECTATORS + BLOCKING_SPECTATORS);
+        List<Socket> clients = new ArrayList<>();
+        for (int i = 0; i < NIO_SPECTATORS + BLOCKING_SPECTATORS; i++) {
+            int port = i < NIO_SPECTATORS ? nioServer.socket().getLocalPort() : blockingServer.getLocalPort();
+            Socket client = spectate(port, 0);
+            clients.add(client);
+            executor.execute(() -> {
+                read(client, inOrder, closedAfterLast);
+                finished.countDown();
+            });
+        }
+        joined.await();
+        System.out.println("spectators: " + group.size());
+
+        String text = "x".repeat(200);
+        long nanos = 0;
+        for (int i = 0; i < MESSAGES; i++) {
+            long start = System.nanoTime();
+            group.send(Frame.of(Packet.message(i + " " + text)));
+            nanos += System.nanoTime() - start;
+            Thread.sleep(1); // a match has a pause between its events, this one is much shorter
+        }
+        System.out.println("sent " + MESSAGES + " messages to " + group.size() + " spectators, "
+                + nanos / 1000 / MESSAGES + "us per message for the sender");
+
+        group.close();
+        finished.await();
+        System.out.println("spectators that got every message in order: " + inOrder.get() + " (expected "
+                + (NIO_SPECTATORS + BLOCKING_SPECTATORS) + ")");
+        System.out.println("closed after the last message: " + closedAfterLast.get());
+        System.out.println("members left: " + group.size() + " (expected 0)");
+
+        // a tiny receive buffer that is never read fills up after a few messages
+        joining.set(slowGroup);
+        Socket slow = spectate(nioServer.socket().getLocalPort(), 4096);
+        while (slowGroup.size() == 0) {
+            Thread.sleep(10);
+        }
+        Frame big = Frame.of(Packet.message("x".repeat(4000)));
+        long start = System.nanoTime();
+        for (int i = 0; i < FLOOD; i++) {
+            slowGroup.send(big);
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        Thread.sleep(500);
+        System.out.println("flooded a spectator that never reads in " + millis + "ms, dropped: "
+                + (slowGroup.size() == 0) + " (expected true)");
+        slow.close();
+        for (Socket client : clients) {
+            client.close();
+        }
+        nioServer.close();
+        blockingServer.close();
+        executor.shutdownNow();
+        writers.shutdownNow();
+    }
+
+    private static Socket spectate(int port, int receiveBuffer) throws IOException {
+        Socket client = new Socket();
+        if (receiveBuffer > 0) {
+            client.setReceiveBufferSize(receiveBuffer);
+        }
+        client.connect(new InetSocketAddress("localhost", port));
+        ByteBuffer frame = Codec.JSON.encode(Packet.spectate(0));
+        client.getOutputStream().write(frame.array(), frame.position(), frame.remaining());
+        return client;
+    }
+
+    /**
+     * reads the response and then the messages until the server closes the connection
+     */
+    private static void read(Socket client, AtomicInteger inOrder, AtomicInteger closedAfterLast) {
+        int expected = 0;
+        try {
+            PacketReader reader = new PacketReader(client.getInputStream(), Codec.JSON);
+            Packet packet = reader.read(new Packet());
+            if (!packet.getFlag()) {
+                return;
+            }
+            while (true) {
+                String text = reader.read(packet).getText();
+                if (!text.startsWith(expected + " ")) {
+                    return;
+                }
+                expected++;
+            }
+        } catch (EOFException e) {
+            if (expected == MESSAGES) {
+                inOrder.incrementAndGet();
+                closedAfterLast.incrementAndGet();
+            }
+        } catch (IOException e) {
+            System.out.println("failed to read: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package test;
+
+import protocol.Codec;
+import protocol.Packet;
+import server.ExecutionMode;
+import server.PlayerSocket;
+import server.SlowConsumerPolicy;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * compares the number of threads and the memory used while many players are connected over real sockets
+ * in each execution mode. every connection does the name handshake and then has a PlayerSocket reader
+ * blocked on its socket, like a player waiting for the next question. the client ends of the sockets are
+ * opened by a second java process, so the numbers only count the server side and each process needs one
+ * file descriptor per player, which keeps 10000 players under a limit of 20000 open files.
+ * run it once per mode: ThreadModeTest platform|virtual [players], by default 10000 players.
+ */
+public class ThreadModeTest {
+    private static final int DEFAULT_PLAYERS = 10000;
+
+    public static void main(String[] args) throws InterruptedException, IOException {
+        if (args.length > 0 && args[0].equals("clients")) {
+            connectClients(Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+            return;
+        }
+        ExecutionMode mode = args.length > 0 && args[0].equals("virtual") ? ExecutionMode.VIRTUAL : ExecutionMode.PLATFORM;
+        int players = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PLAYERS;
+        CountDownLatch connected = new CountDownLatch(players);
+        long start = System.currentTimeMillis();
+        try (ExecutorService executor = mode.newExecutor("player");
+             ServerSocket server = new ServerSocket(0, players)) {
+            executor.execute(() -> {
+                try {
+                    while (true) {
+                        Socket socket = server.accept();
+                        executor.execute(() -> {
+                            try {
+                                new PlayerSocket(socket, executor, SlowConsumerPolicy.COALESCE, null, null)
+                                        .startReading();
+                                connected.countDown();
+                            } catch (IOException e) {
+                                System.out.println("handshake failed");
+                            }
+                        });
+                    }
+                } catch (IOException ignored) {
+                    // test is over
+                }
+            });
+            Process clients = startClients(server.getLocalPort(), players);
+            connected.await();
+            long elapsed = System.currentTimeMillis() - start;
+            System.gc();
+            Runtime runtime = Runtime.getRuntime();
+            long heap = (runtime.totalMemory() - runtime.freeMemory()) / 1024 / 1024;
+            System.out.println(mode + " mode with " + players + " connected players");
+            System.out.println("connected in: " + elapsed + "ms");
+            System.out.println("live threads: " + ManagementFactory.getThreadMXBean().getThreadCount());
+            System.out.println("heap used: " + heap + "MB");
+            System.out.println("resident memory: " + residentMemory());
+            clients.destroy(); // the readers see the end of the stream and finish
+            clients.waitFor();
+        }
+    }
+
+    /**
+     * starts the process that opens the client ends of the sockets
+     */
+    private static Process startClients(int port, int players) throws IOException {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        return new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                ThreadModeTest.class.getName(), "clients", String.valueOf(port), String.valueOf(players))
+                .inheritIO()
+                .start();
+    }
+
+    /**
+     * connects the players, sends their names and keeps the sockets open until the process is stopped
+     */
+    private static void connectClients(int port, int players) throws IOException, InterruptedException {
+        List<Socket> clients = new ArrayList<>();
+        ByteBuffer name = Codec.JSON.encode(Packet.name("player"));
+        for (int i = 0; i < players; i++) {
+            Socket client = new Socket("localhost", port);
+            client.getOutputStream().write(name.array(), name.position(), name.remaining());
+            clients.add(client);
+        }
+        Thread.sleep(Long.MAX_VALUE);
+    }
+
+    private static String residentMemory() throws IOException {
+        for (String line : Files.readAllLines(Paths.get("/proc/self/status"))) {
+            if (line.startsWith("VmRSS:")) {
+                return line.substring("VmRSS:".length()).trim();
+            }
+        }
+        return "unknown";
+    }
+}
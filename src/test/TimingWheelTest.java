@@ -0,0 +1,35 @@
+package test;
+
+import server.TimingWheel;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TimingWheelTest {
+    public static void main(String[] args) throws InterruptedException {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        TimingWheel timer = new TimingWheel(1, executor);
+        timer.start();
+        long[] delays = {0, 5, 63, 64, 65, 700, 4095, 4100, 5000};
+        CountDownLatch done = new CountDownLatch(delays.length);
+        long start = System.currentTimeMillis();
+        for (long delay : delays) {
+            timer.schedule(() -> {
+                long late = System.currentTimeMillis() - start - delay;
+                System.out.println("task " + delay + "ms ran " + late + "ms late");
+                done.countDown();
+            }, delay);
+        }
+        TimingWheel.Timeout cancelled = timer.schedule(() -> System.out.println("cancelled task ran!"), 100);
+        System.out.println("cancel: " + cancelled.cancel());
+
+        AtomicInteger runs = new AtomicInteger();
+        TimingWheel.Timeout repeating = timer.scheduleAtFixedRate(runs::incrementAndGet, 0, 100);
+        done.await();
+        repeating.cancel();
+        System.out.println("repeating task ran " + runs.get() + " times in " + (System.currentTimeMillis() - start) + "ms");
+        executor.shutdown();
+    }
+}